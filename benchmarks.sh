@@ -0,0 +1,34 @@
+#!/bin/bash
+set -e
+
+SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+cd "$SCRIPT_DIR"
+
+# Usage: ./benchmarks.sh [filter] [--quick] [--max-size BYTES]
+# e.g.   ./benchmarks.sh formatJson --max-size 1048576
+
+mkdir -p curlbaby/target/classes
+mkdir -p curlbaby/target/benchmark-classes
+
+if ! command -v java &> /dev/null; then
+    echo "Error: Java is not installed or not in PATH"
+    exit 1
+fi
+
+if [[ "$OSTYPE" == "msys" || "$OSTYPE" == "win32" || "$OSTYPE" == "cygwin" ]]; then
+    CP_SEP=";"
+else
+    CP_SEP=":"
+fi
+
+JAVA_FILES=$(find com/curlbaby -name "*.java")
+BENCHMARK_FILES=$(find benchmarks -name "*.java")
+
+echo "Compiling cUrlBaby and benchmarks..."
+javac -encoding UTF-8 -cp "curlbaby/lib/*" -d curlbaby/target/classes $JAVA_FILES
+javac -encoding UTF-8 -cp "curlbaby/target/classes${CP_SEP}curlbaby/lib/*" -d curlbaby/target/benchmark-classes $BENCHMARK_FILES
+
+# The 100 MB formatter case needs room for the input and the formatted output
+java -Xms2g -Xmx2g -XX:+UseParallelGC -Djava.awt.headless=true \
+    -cp "curlbaby/target/benchmark-classes${CP_SEP}curlbaby/target/classes${CP_SEP}curlbaby/lib/*" \
+    com.curlbaby.benchmarks.CurlBabyBenchmarks "$@"
@@ -0,0 +1,98 @@
+package com.curlbaby.benchmarks;
+
+// Minimal JMH-style harness: timed warmup, then timed measurement iterations, reporting the
+// mean time per operation and its spread across iterations.
+public class BenchmarkRunner {
+    private final long warmupMillis;
+    private final long iterationMillis;
+    private final int iterations;
+    private final String filter;
+
+    // Results are folded in here so the JIT cannot drop the benchmarked work as dead code
+    private static volatile long sink;
+
+    public BenchmarkRunner(long warmupMillis, long iterationMillis, int iterations, String filter) {
+        this.warmupMillis = warmupMillis;
+        this.iterationMillis = iterationMillis;
+        this.iterations = iterations;
+        this.filter = filter;
+    }
+
+    public interface Operation {
+        // Performs one operation and returns something derived from its result
+        long run() throws Exception;
+    }
+
+    public boolean matches(String name) {
+        return filter == null || name.contains(filter);
+    }
+
+    // For skipping the setup of a group of benchmarks when none of them will run
+    public boolean matchesAny(String... names) {
+        for (String name : names) {
+            if (matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void run(String name, Operation operation) throws Exception {
+        if (!matches(name)) {
+            return;
+        }
+        System.out.print("  " + name + " ...");
+        System.out.flush();
+
+        measure(operation, warmupMillis);
+        double[] nanosPerOp = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long[] measured = measure(operation, iterationMillis);
+            nanosPerOp[i] = (double) measured[1] / measured[0];
+        }
+
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double deviation = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        System.out.print("\r\033[2K");
+        System.out.printf("  %-44s %12s %12s %14s ops/s%n", name, formatNanos(mean), "+- " + formatNanos(deviation),
+                String.format("%.1f", 1e9 / mean));
+    }
+
+    // Runs the operation for at least the given time (and at least once); returns {ops, nanos}
+    private long[] measure(Operation operation, long millis) throws Exception {
+        long budget = millis * 1_000_000L;
+        long ops = 0;
+        long accumulated = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            accumulated += operation.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget);
+        sink += accumulated;
+        return new long[] { ops, elapsed };
+    }
+
+    static String formatNanos(double nanos) {
+        if (nanos < 1_000) {
+            return String.format("%.1f ns", nanos);
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.2f us", nanos / 1_000);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.2f ms", nanos / 1_000_000);
+        }
+        return String.format("%.2f s", nanos / 1_000_000_000);
+    }
+}
@@ -1,8 +1,9 @@
 package com.curlbaby;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.HashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -11,15 +12,15 @@ import com.curlbaby.HttpRequestHandler.Request;
 public class ApiCollectionCommands {
     private final ApiCollectionManager collectionManager;
     private final UIManager uiManager;
-    private final Scanner scanner;
+    private final Prompter prompter;
     private final HttpRequestHandler requestHandler;
     private final JsonFormatter jsonFormatter;
     
     public ApiCollectionCommands(ApiCollectionManager collectionManager, UIManager uiManager, 
-                                HttpRequestHandler requestHandler) {
+                                HttpRequestHandler requestHandler, Prompter prompter) {
         this.collectionManager = collectionManager;
         this.uiManager = uiManager;
-        this.scanner = new Scanner(System.in);
+        this.prompter = prompter;
         this.requestHandler = requestHandler;
         this.jsonFormatter = new JsonFormatter();
     }
@@ -115,10 +116,14 @@ public class ApiCollectionCommands {
     private void printApiHelp() {
         uiManager.printInfo("API Commands:");
         uiManager.printInfo("  api save <group_id|group_name> <name> - Save current or new API request to a group");
+        uiManager.printInfo("  api save <group> <name> --method <m> --url <url> [-H <header>] [-d <body>] - Same, without prompts");
         uiManager.printInfo("  api list <group_id|group_name> - List all APIs in a group");
         uiManager.printInfo("  api show <id> - Show details of a specific API");
         uiManager.printInfo("  api delete <id> - Delete an API request");
         uiManager.printInfo("  run <id> - Execute a saved API request");
+        uiManager.printInfo("  run <id> -o <file> - Save the response body of a saved request to a file");
+        uiManager.printInfo("  run <id> -o <file> --segments <n> - Download it in n parallel byte ranges");
+        uiManager.printInfo("  run group <id|name> [--parallel <n>] - Execute every request in a group");
     }
      
     
@@ -133,8 +138,7 @@ public class ApiCollectionCommands {
         String description = parts.length > 1 ? parts[1] : "";
         
         if (description.isEmpty()) {
-            uiManager.printInputPrompt("Enter group description (optional):");
-            description = scanner.nextLine().trim();
+            description = prompter.ask("Enter group description (optional):");
         }
         
         if (collectionManager.createGroup(name, description)) {
@@ -243,17 +247,17 @@ public class ApiCollectionCommands {
             int groupId = Integer.parseInt(argument);
      
             uiManager.printWarning("This will delete the group and all its API requests.");
-            uiManager.printInputPrompt("Are you sure? (y/n):");
-            String confirm = scanner.nextLine().trim().toLowerCase();
             
-            if (confirm.equals("y") || confirm.equals("yes")) {
+            if (prompter.confirm("Are you sure? (y/n):")) {
                 if (collectionManager.deleteGroup(groupId)) {
                     uiManager.printSuccess("Group deleted");
                 } else {
                     uiManager.printError("Failed to delete group. Group might not exist.");
                 }
-            } else {
+            } else if (prompter.isInteractive()) {
                 uiManager.printInfo("Deletion cancelled");
+            } else {
+                uiManager.printError("Deletion needs confirmation; run the script with --yes");
             }
         } catch (NumberFormatException e) {
             uiManager.printError("Invalid group ID: " + argument);
@@ -261,17 +265,18 @@ public class ApiCollectionCommands {
     }
      
     
+    // api save <group> <name> [--method M] [--url U] [-H "Name: value"] [-d <body> | --body-file <path>]
+    // [--description D]; whatever is not given as an option is prompted for
     private void saveApi(String argument) {
-        Pattern pattern = Pattern.compile("([^\\s]+)\\s+(.+)");
-        Matcher matcher = pattern.matcher(argument);
-        
-        if (!matcher.matches()) {
+        CommandOptions options = CommandOptions.parse(argument);
+        List<String> positional = options.getPositional();
+        if (positional.size() < 2) {
             uiManager.printError("Usage: api save <group_id|group_name> <name>");
             return;
         }
         
-        String groupIdentifier = matcher.group(1);
-        String requestName = matcher.group(2);
+        String groupIdentifier = positional.get(0);
+        String requestName = String.join(" ", positional.subList(1, positional.size()));
          
         int groupId;
         try {
@@ -292,70 +297,77 @@ public class ApiCollectionCommands {
         }
         
         
-        uiManager.printInputPrompt("HTTP Method (GET, POST, PUT, DELETE):");
-        String method = scanner.nextLine().trim().toUpperCase();
+        String method = options.has("method")
+                ? options.get("method").toUpperCase()
+                : prompter.ask("HTTP Method (GET, POST, PUT, DELETE):").toUpperCase();
         if (!method.matches("GET|POST|PUT|DELETE")) {
-            uiManager.printError("Invalid HTTP method: " + method);
+            uiManager.printError(method.isEmpty() ? "HTTP method is required (--method)" : "Invalid HTTP method: " + method);
             return;
         }
         
-        uiManager.printInputPrompt("URL:");
-        String url = scanner.nextLine().trim();
-        if (url.isEmpty()) {
+        String url = options.has("url") ? options.get("url") : prompter.ask("URL:");
+        if (url == null || url.isEmpty()) {
             uiManager.printError("URL cannot be empty");
             return;
         }
         
          
         Map<String, String> headers = new HashMap<>();
-        boolean addingHeaders = true;
-        while (addingHeaders) {
-            uiManager.printInputPrompt("Add header? (y/n):");
-            String addHeader = scanner.nextLine().trim().toLowerCase();
-            if (addHeader.equals("y")) {
-                uiManager.printInputPrompt("Header name:");
-                String headerName = scanner.nextLine().trim();
-                uiManager.printInputPrompt("Header value:");
-                String headerValue = scanner.nextLine().trim();
+        List<String> headerOptions = new ArrayList<>(options.getAll("H"));
+        headerOptions.addAll(options.getAll("header"));
+        for (String header : headerOptions) {
+            int colon = header != null ? header.indexOf(':') : -1;
+            if (colon <= 0) {
+                uiManager.printError("Headers must look like \"Name: value\": " + header);
+                return;
+            }
+            headers.put(header.substring(0, colon).trim(), header.substring(colon + 1).trim());
+        }
+        if (headerOptions.isEmpty() && prompter.isInteractive()) {
+            while (prompter.confirm("Add header? (y/n):")) {
+                String headerName = prompter.ask("Header name:");
+                String headerValue = prompter.ask("Header value:");
                 headers.put(headerName, headerValue);
-            } else {
-                addingHeaders = false;
             }
         }
         
          
-        StringBuilder headersJson = new StringBuilder("{");
-        boolean first = true;
-        for (Map.Entry<String, String> entry : headers.entrySet()) {
-            if (!first) {
-                headersJson.append(", ");
-            }
-            headersJson.append("\"").append(entry.getKey()).append("\": \"")
-                      .append(entry.getValue()).append("\"");
-            first = false;
-        }
-        headersJson.append("}");
+        String headersJson = Request.headersToJson(headers);
         
         
         String body = "";
+        String bodyFile = null;
         if (method.equals("POST") || method.equals("PUT")) {
-            uiManager.printInputPrompt("Request body (enter 'json' for JSON editor, or type directly):");
-            String bodyInput = scanner.nextLine().trim();
+            String bodyInput;
+            if (options.has("body-file")) {
+                bodyInput = "@" + options.get("body-file");
+            } else if (options.has("d") || options.has("data")) {
+                bodyInput = options.get("d", options.get("data"));
+            } else {
+                bodyInput = prompter.ask("Request body (enter 'json' for JSON editor, @<path> to send a file, or type directly):");
+            }
             
-            if (bodyInput.equalsIgnoreCase("json")) {
-                SimpleJsonEditor editor = new SimpleJsonEditor(uiManager, scanner, jsonFormatter);
+            if (bodyInput.equalsIgnoreCase("json") && prompter.isInteractive()) {
+                SimpleJsonEditor editor = new SimpleJsonEditor(uiManager, prompter, jsonFormatter);
                 body = editor.edit();
+            } else if (bodyInput.startsWith("@")) {
+                File file = new File(bodyInput.substring(1));
+                if (!file.isFile()) {
+                    uiManager.printWarning("Body file does not exist yet: " + file.getAbsolutePath());
+                }
+                bodyFile = file.getAbsolutePath();
             } else if (!bodyInput.isEmpty()) {
                 body = bodyInput;
             }
         }
         
-        uiManager.printInputPrompt("Description (optional):");
-        String description = scanner.nextLine().trim();
+        String description = options.has("description")
+                ? options.get("description")
+                : prompter.ask("Description (optional):");
         
         
         if (collectionManager.saveRequest(groupId, requestName, method, url, 
-                                     headersJson.toString(), body, description)) {
+                                     headersJson, body, bodyFile, description)) {
             uiManager.printSuccess("API request saved: " + requestName);
         }
     }
@@ -443,6 +455,16 @@ public class ApiCollectionCommands {
                 }
             }
             
+            String retryPolicy = (String) request.get("retry_policy");
+            if (retryPolicy != null) {
+                System.out.println("  Retry policy: " + retryPolicy);
+            }
+            
+            String bodyFile = (String) request.get("body_file");
+            if (bodyFile != null && !bodyFile.isEmpty()) {
+                System.out.println("  Body file: " + bodyFile);
+            }
+            
             String body = (String) request.get("body");
             if (body != null && !body.isEmpty()) {
                 System.out.println("  Body: ");
@@ -473,17 +495,17 @@ public class ApiCollectionCommands {
             
              
             uiManager.printWarning("Are you sure you want to delete this API request?");
-            uiManager.printInputPrompt("Confirm (y/n):");
-            String confirm = scanner.nextLine().trim().toLowerCase();
             
-            if (confirm.equals("y") || confirm.equals("yes")) {
+            if (prompter.confirm("Confirm (y/n):")) {
                 if (collectionManager.deleteRequest(requestId)) {
                     uiManager.printSuccess("API request deleted");
                 } else {
                     uiManager.printError("Failed to delete API request. Request might not exist.");
                 }
-            } else {
+            } else if (prompter.isInteractive()) {
                 uiManager.printInfo("Deletion cancelled");
+            } else {
+                uiManager.printError("Deletion needs confirmation; run the script with --yes");
             }
             
         } catch (NumberFormatException e) {
@@ -497,8 +519,18 @@ public class ApiCollectionCommands {
             return;
         }
         
+        String[] parts = argument.split("\\s+", 2);
+        if (parts[0].equalsIgnoreCase("group")) {
+            runGroup(parts.length > 1 ? parts[1] : "");
+            return;
+        }
+        
+        CommandOptions options = CommandOptions.parse(argument);
+        String output = options.get("o", options.get("output"));
+        String idArgument = options.getPositional(0) != null ? options.getPositional(0) : argument;
+        
         try {
-            int requestId = Integer.parseInt(argument);
+            int requestId = Integer.parseInt(idArgument);
             Map<String, Object> request = collectionManager.getRequestById(requestId);
             
             if (request == null) {
@@ -507,38 +539,19 @@ public class ApiCollectionCommands {
             }
             
             String method = (String) request.get("method");
-            String url = (String) request.get("url");
-            String headersJson = (String) request.get("headers");
-            String body = (String) request.get("body");
+            Request httpRequest = Request.fromSavedRequest(request);
             
-             
-            Request httpRequest = new Request(method, url);
-            
-             
-            if (headersJson != null && !headersJson.equals("{}")) {
-                try {
-                    
-                    headersJson = headersJson.replaceAll("[{}\"]", "");
-                    String[] headerPairs = headersJson.split(",");
-                    for (String pair : headerPairs) {
-                        String[] keyValue = pair.split(":");
-                        if (keyValue.length == 2) {
-                            String key = keyValue[0].trim();
-                            String value = keyValue[1].trim();
-                            httpRequest.addHeader(key, value);
-                        }
-                    }
-                } catch (Exception e) {
-                    uiManager.printWarning("Error parsing headers: " + e.getMessage());
+            if (output != null) {
+                int segments = options.getInt("segments", 1);
+                if (segments < 1) {
+                    uiManager.printError("Segment count must be positive");
+                    return;
                 }
+                uiManager.printInfo("Downloading saved request: [" + method + "] " + request.get("name"));
+                requestHandler.downloadToFile(httpRequest, output, segments);
+                return;
             }
             
-    
-            if ((method.equals("POST") || method.equals("PUT")) && body != null && !body.isEmpty()) {
-                httpRequest.setBody(body);
-            }
-            
-           
             uiManager.printInfo("Executing saved request: [" + method + "] " + request.get("name"));
             switch (method) {
                 case "GET":
@@ -558,7 +571,83 @@ public class ApiCollectionCommands {
             }
             
         } catch (NumberFormatException e) {
-            uiManager.printError("Invalid request ID: " + argument);
+            uiManager.printError("Invalid request ID: " + idArgument);
+        } catch (IllegalArgumentException e) {
+            uiManager.printError(e.getMessage());
+        }
+    }
+    
+    private void runGroup(String argument) {
+        CommandOptions options = CommandOptions.parse(argument);
+        String groupIdentifier = options.getPositional(0);
+        if (groupIdentifier == null) {
+            uiManager.printError("Usage: run group <id|name> [--parallel <n>]");
+            return;
+        }
+        
+        int parallel;
+        try {
+            parallel = options.getInt("parallel", 1);
+        } catch (IllegalArgumentException e) {
+            uiManager.printError(e.getMessage());
+            return;
+        }
+        if (parallel < 1) {
+            uiManager.printError("Parallelism must be positive");
+            return;
+        }
+        
+        int groupId;
+        try {
+            groupId = Integer.parseInt(groupIdentifier);
+        } catch (NumberFormatException e) {
+            Integer id = collectionManager.getGroupIdByName(groupIdentifier);
+            if (id == null) {
+                uiManager.printError("Group not found: " + groupIdentifier);
+                return;
+            }
+            groupId = id;
+        }
+        
+        Map<String, Object> group = collectionManager.getGroupById(groupId);
+        if (group == null) {
+            uiManager.printError("Group not found with ID: " + groupId);
+            return;
+        }
+        
+        List<Map<String, Object>> requests = collectionManager.getRequestsByGroupId(groupId);
+        if (requests.isEmpty()) {
+            uiManager.printInfo("No API requests in group: " + group.get("name"));
+            return;
+        }
+        parallel = Math.min(parallel, requests.size());
+        
+        HttpTransport transport = requestHandler.getTransport();
+        ConnectionPool pool = requestHandler.getConnectionPool();
+        int maxPerHost = pool.getMaxPerHost();
+        int maxIdle = pool.getMaxIdlePerHost();
+        boolean pooled = transport.getName().equals("h1");
+        if (pooled && parallel > maxPerHost) {
+            pool.setMaxPerHost(parallel);
+            pool.setMaxIdlePerHost(parallel);
+        }
+        
+        uiManager.printInfo(String.format("Running %d requests from %s with %d in parallel (%s)",
+                requests.size(), group.get("name"), parallel, transport.getName()));
+        
+        GroupRunner runner = new GroupRunner(uiManager, transport);
+        try {
+            long start = System.nanoTime();
+            GroupRunner.Result[] results = runner.run(requests, parallel);
+            runner.printResults(results, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            uiManager.printError("Group run interrupted");
+        } finally {
+            if (pooled) {
+                pool.setMaxPerHost(maxPerHost);
+                pool.setMaxIdlePerHost(maxIdle);
+            }
         }
     }
-}
\ No newline at end of file
+}
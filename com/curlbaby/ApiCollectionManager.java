@@ -1,80 +1,104 @@
 package com.curlbaby;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.sql.SQLException;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ApiCollectionManager {
-    private final String dbPath;
-    private Connection connection;
+    private final Database database;
     private final UIManager uiManager;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
     
-    public ApiCollectionManager(UIManager uiManager) {
+    // Told about every committed change to group and request names, so views of them (such as
+    // Tab completion) can follow along without querying again
+    public interface ChangeListener {
+        default void groupAdded(String name) {}
+        default void groupRenamed(String oldName, String newName) {}
+        // Its requests go with it
+        default void groupRemoved(String name) {}
+        default void requestAdded(String group, String name) {}
+        default void requestRemoved(String group, String name) {}
+    }
+    
+    public ApiCollectionManager(UIManager uiManager, Database database) {
         this.uiManager = uiManager;
-        String userHome = System.getProperty("user.home");
-        File dataDir = new File(userHome, ".curlbaby");
-        if (!dataDir.exists()) {
-            dataDir.mkdir();
-        }
-        this.dbPath = new File(dataDir, "api_collections.db").getAbsolutePath();
-        initializeDatabase();
+        this.database = database;
     }
     
-    private void initializeDatabase() {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-            System.out.println("Connected to SQLite database: " + dbPath);
-            
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(
-                    "CREATE TABLE IF NOT EXISTS api_groups (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "name TEXT UNIQUE NOT NULL, " +
-                    "description TEXT)"
-                );
-                
-                stmt.execute(
-                    "CREATE TABLE IF NOT EXISTS api_requests (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    "group_id INTEGER NOT NULL, " +
-                    "name TEXT NOT NULL, " +
-                    "method TEXT NOT NULL, " +
-                    "url TEXT NOT NULL, " +
-                    "headers TEXT, " +   
-                    "body TEXT, " +     
-                    "description TEXT, " +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                    "FOREIGN KEY(group_id) REFERENCES api_groups(id) ON DELETE CASCADE, " +
-                    "UNIQUE(group_id, name))"
-                );
-                
-                // Enable foreign keys
-                stmt.execute("PRAGMA foreign_keys = ON");
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    // The collections file, created with its schema by the first command that uses it
+    public static Database openDatabase() {
+        return new Database(Database.dataFile("api_collections.db"), ApiCollectionManager::createSchema);
+    }
+    
+    private static Void createSchema(Database.Handle db) throws SQLException {
+        db.execute(
+            "CREATE TABLE IF NOT EXISTS api_groups (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "name TEXT UNIQUE NOT NULL, " +
+            "description TEXT)"
+        );
+        
+        db.execute(
+            "CREATE TABLE IF NOT EXISTS api_requests (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "group_id INTEGER NOT NULL, " +
+            "name TEXT NOT NULL, " +
+            "method TEXT NOT NULL, " +
+            "url TEXT NOT NULL, " +
+            "headers TEXT, " +   
+            "body TEXT, " +     
+            "description TEXT, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "FOREIGN KEY(group_id) REFERENCES api_groups(id) ON DELETE CASCADE, " +
+            "UNIQUE(group_id, name))"
+        );
+        
+        migrateBodyFileColumn(db);
+        
+        // Retry policies attach to a group or a single request (scope 'group' or 'request')
+        db.execute(
+            "CREATE TABLE IF NOT EXISTS retry_policies (" +
+            "scope TEXT NOT NULL, " +
+            "scope_id INTEGER NOT NULL, " +
+            "spec TEXT NOT NULL, " +
+            "PRIMARY KEY(scope, scope_id))"
+        );
+        return null;
+    }
+    
+    // Databases created before body files were supported lack the body_file column
+    private static void migrateBodyFileColumn(Database.Handle db) throws SQLException {
+        try (ResultSet rs = db.prepare("PRAGMA table_info(api_requests)").executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString("name").equals("body_file")) {
+                    return;
+                }
             }
-            
-        } catch (ClassNotFoundException | SQLException e) {
-            System.err.println("Error initializing API collection database: " + e.getMessage());
         }
+        db.execute("ALTER TABLE api_requests ADD COLUMN body_file TEXT");
     }
     
-     
-    
     public boolean createGroup(String name, String description) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "INSERT INTO api_groups (name, description) VALUES (?, ?)")) {
-            pstmt.setString(1, name);
-            pstmt.setString(2, description);
-            pstmt.executeUpdate();
+        try {
+            database.write(db -> {
+                PreparedStatement pstmt = db.prepare("INSERT INTO api_groups (name, description) VALUES (?, ?)");
+                pstmt.setString(1, name);
+                pstmt.setString(2, description);
+                return pstmt.executeUpdate();
+            });
+            for (ChangeListener listener : listeners) {
+                listener.groupAdded(name);
+            }
             return true;
         } catch (SQLException e) {
             if (e.getMessage().contains("UNIQUE constraint failed")) {
@@ -87,12 +111,21 @@ public class ApiCollectionManager {
     }
     
     public boolean renameGroup(int groupId, String newName) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "UPDATE api_groups SET name = ? WHERE id = ?")) {
-            pstmt.setString(1, newName);
-            pstmt.setInt(2, groupId);
-            int updated = pstmt.executeUpdate();
-            return updated > 0;
+        try {
+            String oldName = database.write(db -> {
+                String name = groupName(db, groupId);
+                PreparedStatement pstmt = db.prepare("UPDATE api_groups SET name = ? WHERE id = ?");
+                pstmt.setString(1, newName);
+                pstmt.setInt(2, groupId);
+                return pstmt.executeUpdate() > 0 ? name : null;
+            });
+            if (oldName == null) {
+                return false;
+            }
+            for (ChangeListener listener : listeners) {
+                listener.groupRenamed(oldName, newName);
+            }
+            return true;
         } catch (SQLException e) {
             uiManager.printError("Error renaming group: " + e.getMessage());
             return false;
@@ -100,12 +133,13 @@ public class ApiCollectionManager {
     }
     
     public boolean updateGroupDescription(int groupId, String description) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "UPDATE api_groups SET description = ? WHERE id = ?")) {
-            pstmt.setString(1, description);
-            pstmt.setInt(2, groupId);
-            int updated = pstmt.executeUpdate();
-            return updated > 0;
+        try {
+            return database.write(db -> {
+                PreparedStatement pstmt = db.prepare("UPDATE api_groups SET description = ? WHERE id = ?");
+                pstmt.setString(1, description);
+                pstmt.setInt(2, groupId);
+                return pstmt.executeUpdate() > 0;
+            });
         } catch (SQLException e) {
             uiManager.printError("Error updating group description: " + e.getMessage());
             return false;
@@ -113,11 +147,20 @@ public class ApiCollectionManager {
     }
     
     public boolean deleteGroup(int groupId) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "DELETE FROM api_groups WHERE id = ?")) {
-            pstmt.setInt(2, groupId);
-            int deleted = pstmt.executeUpdate();
-            return deleted > 0;
+        try {
+            String name = database.write(db -> {
+                String groupName = groupName(db, groupId);
+                PreparedStatement pstmt = db.prepare("DELETE FROM api_groups WHERE id = ?");
+                pstmt.setInt(1, groupId);
+                return pstmt.executeUpdate() > 0 ? groupName : null;
+            });
+            if (name == null) {
+                return false;
+            }
+            for (ChangeListener listener : listeners) {
+                listener.groupRemoved(name);
+            }
+            return true;
         } catch (SQLException e) {
             uiManager.printError("Error deleting group: " + e.getMessage());
             return false;
@@ -125,73 +168,83 @@ public class ApiCollectionManager {
     }
     
     public List<Map<String, Object>> getAllGroups() {
-        List<Map<String, Object>> groups = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, name, description FROM api_groups ORDER BY name")) {
-            
-            while (rs.next()) {
-                Map<String, Object> group = new HashMap<>();
-                group.put("id", rs.getInt("id"));
-                group.put("name", rs.getString("name"));
-                group.put("description", rs.getString("description"));
-                groups.add(group);
-            }
-            
+        try {
+            return database.read(db -> {
+                List<Map<String, Object>> groups = new ArrayList<>();
+                try (ResultSet rs = db.prepare("SELECT id, name, description FROM api_groups ORDER BY name").executeQuery()) {
+                    while (rs.next()) {
+                        groups.add(readGroup(rs));
+                    }
+                }
+                return groups;
+            });
         } catch (SQLException e) {
             uiManager.printError("Error retrieving groups: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return groups;
     }
     
     public Map<String, Object> getGroupById(int groupId) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "SELECT id, name, description FROM api_groups WHERE id = ?")) {
-            pstmt.setInt(1, groupId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Map<String, Object> group = new HashMap<>();
-                    group.put("id", rs.getInt("id"));
-                    group.put("name", rs.getString("name"));
-                    group.put("description", rs.getString("description"));
-                    return group;
+        try {
+            return database.read(db -> {
+                PreparedStatement pstmt = db.prepare("SELECT id, name, description FROM api_groups WHERE id = ?");
+                pstmt.setInt(1, groupId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readGroup(rs) : null;
                 }
-            }
+            });
         } catch (SQLException e) {
             uiManager.printError("Error retrieving group: " + e.getMessage());
+            return null;
         }
-        return null;
+    }
+    
+    private static Map<String, Object> readGroup(ResultSet rs) throws SQLException {
+        Map<String, Object> group = new HashMap<>();
+        group.put("id", rs.getInt("id"));
+        group.put("name", rs.getString("name"));
+        group.put("description", rs.getString("description"));
+        return group;
     }
     
     public Integer getGroupIdByName(String groupName) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "SELECT id FROM api_groups WHERE name = ?")) {
-            pstmt.setString(1, groupName);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("id");
+        try {
+            return database.read(db -> {
+                PreparedStatement pstmt = db.prepare("SELECT id FROM api_groups WHERE name = ?");
+                pstmt.setString(1, groupName);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt("id") : null;
                 }
-            }
+            });
         } catch (SQLException e) {
             uiManager.printError("Error retrieving group ID: " + e.getMessage());
+            return null;
         }
-        return null;
     }
     
     // API request management methods
     
     public boolean saveRequest(int groupId, String name, String method, String url, 
-                               String headers, String body, String description) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "INSERT INTO api_requests (group_id, name, method, url, headers, body, description) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-            pstmt.setInt(1, groupId);
-            pstmt.setString(2, name);
-            pstmt.setString(3, method);
-            pstmt.setString(4, url);
-            pstmt.setString(5, headers);
-            pstmt.setString(6, body);
-            pstmt.setString(7, description);
-            pstmt.executeUpdate();
+                               String headers, String body, String bodyFile, String description) {
+        try {
+            String group = database.write(db -> {
+                PreparedStatement pstmt = db.prepare(
+                        "INSERT INTO api_requests (group_id, name, method, url, headers, body, body_file, description) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                pstmt.setInt(1, groupId);
+                pstmt.setString(2, name);
+                pstmt.setString(3, method);
+                pstmt.setString(4, url);
+                pstmt.setString(5, headers);
+                pstmt.setString(6, body);
+                pstmt.setString(7, bodyFile);
+                pstmt.setString(8, description);
+                pstmt.executeUpdate();
+                return groupName(db, groupId);
+            });
+            for (ChangeListener listener : listeners) {
+                listener.requestAdded(group, name);
+            }
             return true;
         } catch (SQLException e) {
             if (e.getMessage().contains("UNIQUE constraint failed")) {
@@ -204,20 +257,34 @@ public class ApiCollectionManager {
     }
     
     public boolean updateRequest(int requestId, String name, String method, String url,
-                                String headers, String body, String description) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "UPDATE api_requests SET name = ?, method = ?, url = ?, headers = ?, " +
-                "body = ?, description = ?, updated_at = CURRENT_TIMESTAMP " +
-                "WHERE id = ?")) {
-            pstmt.setString(1, name);
-            pstmt.setString(2, method);
-            pstmt.setString(3, url);
-            pstmt.setString(4, headers);
-            pstmt.setString(5, body);
-            pstmt.setString(6, description);
-            pstmt.setInt(7, requestId);
-            int updated = pstmt.executeUpdate();
-            return updated > 0;
+                                String headers, String body, String bodyFile, String description) {
+        try {
+            String[] old = database.write(db -> {
+                String[] groupAndName = requestName(db, requestId);
+                PreparedStatement pstmt = db.prepare(
+                        "UPDATE api_requests SET name = ?, method = ?, url = ?, headers = ?, " +
+                        "body = ?, body_file = ?, description = ?, updated_at = CURRENT_TIMESTAMP " +
+                        "WHERE id = ?");
+                pstmt.setString(1, name);
+                pstmt.setString(2, method);
+                pstmt.setString(3, url);
+                pstmt.setString(4, headers);
+                pstmt.setString(5, body);
+                pstmt.setString(6, bodyFile);
+                pstmt.setString(7, description);
+                pstmt.setInt(8, requestId);
+                return pstmt.executeUpdate() > 0 ? groupAndName : null;
+            });
+            if (old == null) {
+                return false;
+            }
+            if (!old[1].equals(name)) {
+                for (ChangeListener listener : listeners) {
+                    listener.requestRemoved(old[0], old[1]);
+                    listener.requestAdded(old[0], name);
+                }
+            }
+            return true;
         } catch (SQLException e) {
             uiManager.printError("Error updating request: " + e.getMessage());
             return false;
@@ -225,72 +292,171 @@ public class ApiCollectionManager {
     }
     
     public boolean deleteRequest(int requestId) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "DELETE FROM api_requests WHERE id = ?")) {
-            pstmt.setInt(1, requestId);
-            int deleted = pstmt.executeUpdate();
-            return deleted > 0;
+        try {
+            String[] old = database.write(db -> {
+                String[] groupAndName = requestName(db, requestId);
+                PreparedStatement pstmt = db.prepare("DELETE FROM api_requests WHERE id = ?");
+                pstmt.setInt(1, requestId);
+                return pstmt.executeUpdate() > 0 ? groupAndName : null;
+            });
+            if (old == null) {
+                return false;
+            }
+            for (ChangeListener listener : listeners) {
+                listener.requestRemoved(old[0], old[1]);
+            }
+            return true;
         } catch (SQLException e) {
             uiManager.printError("Error deleting request: " + e.getMessage());
             return false;
         }
     }
     
+    private static String groupName(Database.Handle db, int groupId) throws SQLException {
+        PreparedStatement pstmt = db.prepare("SELECT name FROM api_groups WHERE id = ?");
+        pstmt.setInt(1, groupId);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getString("name") : null;
+        }
+    }
+    
+    // The request's group name and its own name
+    private static String[] requestName(Database.Handle db, int requestId) throws SQLException {
+        PreparedStatement pstmt = db.prepare(
+                "SELECT g.name AS group_name, r.name FROM api_requests r " +
+                "JOIN api_groups g ON g.id = r.group_id WHERE r.id = ?");
+        pstmt.setInt(1, requestId);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? new String[] { rs.getString("group_name"), rs.getString("name") } : null;
+        }
+    }
+    
+    // Every request name by group name, in one query
+    public Map<String, List<String>> getRequestNamesByGroup() {
+        try {
+            return database.read(db -> {
+                Map<String, List<String>> names = new HashMap<>();
+                try (ResultSet rs = db.prepare(
+                        "SELECT g.name AS group_name, r.name FROM api_requests r " +
+                        "JOIN api_groups g ON g.id = r.group_id").executeQuery()) {
+                    while (rs.next()) {
+                        names.computeIfAbsent(rs.getString("group_name"), key -> new ArrayList<>()).add(rs.getString("name"));
+                    }
+                }
+                return names;
+            });
+        } catch (SQLException e) {
+            uiManager.printError("Error retrieving requests: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+    
+    // Each request comes with its effective retry policy: its own, else its group's
+    private static final String REQUEST_COLUMNS =
+            "id, group_id, name, method, url, headers, body, body_file, description, COALESCE(" +
+            "(SELECT spec FROM retry_policies WHERE scope = 'request' AND scope_id = api_requests.id), " +
+            "(SELECT spec FROM retry_policies WHERE scope = 'group' AND scope_id = api_requests.group_id)) " +
+            "AS retry_policy";
+    
     public List<Map<String, Object>> getRequestsByGroupId(int groupId) {
-        List<Map<String, Object>> requests = new ArrayList<>();
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "SELECT id, name, method, url, description FROM api_requests " +
-                "WHERE group_id = ? ORDER BY name")) {
-            pstmt.setInt(1, groupId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Map<String, Object> request = new HashMap<>();
-                    request.put("id", rs.getInt("id"));
-                    request.put("name", rs.getString("name"));
-                    request.put("method", rs.getString("method"));
-                    request.put("url", rs.getString("url"));
-                    request.put("description", rs.getString("description"));
-                    requests.add(request);
+        try {
+            return database.read(db -> {
+                PreparedStatement pstmt = db.prepare(
+                        "SELECT " + REQUEST_COLUMNS + " FROM api_requests WHERE group_id = ? ORDER BY name");
+                pstmt.setInt(1, groupId);
+                List<Map<String, Object>> requests = new ArrayList<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        requests.add(readRequest(rs));
+                    }
                 }
-            }
+                return requests;
+            });
         } catch (SQLException e) {
             uiManager.printError("Error retrieving requests: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return requests;
     }
     
     public Map<String, Object> getRequestById(int requestId) {
-        try (PreparedStatement pstmt = connection.prepareStatement(
-                "SELECT id, group_id, name, method, url, headers, body, description " +
-                "FROM api_requests WHERE id = ?")) {
-            pstmt.setInt(1, requestId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    Map<String, Object> request = new HashMap<>();
-                    request.put("id", rs.getInt("id"));
-                    request.put("group_id", rs.getInt("group_id"));
-                    request.put("name", rs.getString("name"));
-                    request.put("method", rs.getString("method"));
-                    request.put("url", rs.getString("url"));
-                    request.put("headers", rs.getString("headers"));
-                    request.put("body", rs.getString("body"));
-                    request.put("description", rs.getString("description"));
-                    return request;
+        try {
+            return database.read(db -> {
+                PreparedStatement pstmt = db.prepare("SELECT " + REQUEST_COLUMNS + " FROM api_requests WHERE id = ?");
+                pstmt.setInt(1, requestId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? readRequest(rs) : null;
                 }
-            }
+            });
         } catch (SQLException e) {
             uiManager.printError("Error retrieving request: " + e.getMessage());
+            return null;
         }
-        return null;
     }
     
-    public void close() {
+    private static Map<String, Object> readRequest(ResultSet rs) throws SQLException {
+        Map<String, Object> request = new HashMap<>();
+        request.put("id", rs.getInt("id"));
+        request.put("group_id", rs.getInt("group_id"));
+        request.put("name", rs.getString("name"));
+        request.put("method", rs.getString("method"));
+        request.put("url", rs.getString("url"));
+        request.put("headers", rs.getString("headers"));
+        request.put("body", rs.getString("body"));
+        request.put("body_file", rs.getString("body_file"));
+        request.put("retry_policy", rs.getString("retry_policy"));
+        request.put("description", rs.getString("description"));
+        return request;
+    }
+    
+    // Stores the policy spec for a group or request; a null spec removes it
+    public boolean setRetryPolicy(String scope, int scopeId, String spec) {
+        String sql = spec != null
+                ? "INSERT OR REPLACE INTO retry_policies (scope, scope_id, spec) VALUES (?, ?, ?)"
+                : "DELETE FROM retry_policies WHERE scope = ? AND scope_id = ?";
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
+            return database.write(db -> {
+                PreparedStatement pstmt = db.prepare(sql);
+                pstmt.setString(1, scope);
+                pstmt.setInt(2, scopeId);
+                if (spec != null) {
+                    pstmt.setString(3, spec);
+                }
+                return pstmt.executeUpdate() > 0;
+            });
         } catch (SQLException e) {
-            System.err.println("Error closing database connection: " + e.getMessage());
+            uiManager.printError("Error saving retry policy: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    public List<Map<String, Object>> getRetryPolicies() {
+        try {
+            return database.read(db -> {
+                List<Map<String, Object>> policies = new ArrayList<>();
+                try (ResultSet rs = db.prepare(
+                        "SELECT p.scope, p.scope_id, p.spec, COALESCE(g.name, r.name) AS name " +
+                        "FROM retry_policies p " +
+                        "LEFT JOIN api_groups g ON p.scope = 'group' AND g.id = p.scope_id " +
+                        "LEFT JOIN api_requests r ON p.scope = 'request' AND r.id = p.scope_id " +
+                        "ORDER BY p.scope, p.scope_id").executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> policy = new HashMap<>();
+                        policy.put("scope", rs.getString("scope"));
+                        policy.put("scope_id", rs.getInt("scope_id"));
+                        policy.put("spec", rs.getString("spec"));
+                        policy.put("name", rs.getString("name"));
+                        policies.add(policy);
+                    }
+                }
+                return policies;
+            });
+        } catch (SQLException e) {
+            uiManager.printError("Error retrieving retry policies: " + e.getMessage());
+            return new ArrayList<>();
         }
     }
-}
\ No newline at end of file
+    
+    public void close() {
+        database.close();
+    }
+}
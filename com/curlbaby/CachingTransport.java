@@ -0,0 +1,236 @@
+package com.curlbaby;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.curlbaby.HttpRequestHandler.Request;
+import com.curlbaby.HttpResponseCache.CacheControl;
+import com.curlbaby.HttpResponseCache.CachedResponse;
+
+// Serves fresh GET responses from the cache, revalidates stale ones with If-None-Match /
+// If-Modified-Since and stores cacheable responses while the caller reads them.
+public class CachingTransport implements HttpTransport {
+    private final HttpResponseCache cache;
+    private final HttpTransport delegate;
+
+    public CachingTransport(HttpResponseCache cache, HttpTransport delegate) {
+        this.cache = cache;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public HttpResponse execute(Request request) throws IOException {
+        if (!cache.isEnabled()) {
+            return delegate.execute(request);
+        }
+        if (!request.getMethod().equals("GET")) {
+            HttpResponse response = delegate.execute(request);
+            if (!request.getMethod().equals("HEAD") && response.getStatus() < 400) {
+                cache.invalidate(request.getUrl());
+            }
+            return response;
+        }
+
+        String requestCacheControl = header(request.getHeaders(), "Cache-Control");
+        boolean noStore = CacheControl.has(requestCacheControl, "no-store");
+        CachedResponse cached = noStore ? null
+                : cache.lookup(request.getMethod(), request.getUrl(), request.getHeaders());
+
+        if (cached != null && cached.isFresh(System.currentTimeMillis())
+                && !CacheControl.has(requestCacheControl, "no-cache")) {
+            cache.recordHit(cached);
+            RequestTiming timing = new RequestTiming();
+            timing.setDns(0);
+            timing.setConnect(0);
+            timing.setTls(0);
+            timing.markFirstByte(timing.getStartedAt());
+            HttpResponse response = fromCache(cached, cached.getHeaders(), timing);
+            response.setCacheStatus("fresh copy, age " + cached.getAgeSeconds(System.currentTimeMillis()) + "s");
+            return response;
+        }
+
+        Request sent = request;
+        if (cached != null && cached.hasValidators()) {
+            sent = withValidators(request, cached);
+        }
+
+        HttpResponse response = delegate.execute(sent);
+        if (cached != null && response.getStatus() == 304) {
+            // Drain the empty 304 body so the connection goes back to the pool
+            InputStream body = response.getBody();
+            while (body.read() != -1) {
+                // nothing to read
+            }
+            response.close();
+
+            Map<String, List<String>> headers = mergeHeaders(cached.getHeaders(), response.getHeaders());
+            CachedResponse refreshed = new CachedResponse(cached.getStatus(), cached.getMessage(),
+                    cached.getProtocol(), headers, cached.getBody(), System.currentTimeMillis());
+            cache.store(request.getMethod(), request.getUrl(), request.getHeaders(), refreshed);
+            cache.recordRevalidation(refreshed);
+
+            HttpResponse revalidated = fromCache(refreshed, headers, response.getTiming());
+            revalidated.setCacheStatus("revalidated, server answered 304 Not Modified");
+            return revalidated;
+        }
+
+        cache.recordMiss();
+        if (!noStore && isStorable(response)) {
+            HttpResponse capturing = new HttpResponse(response.getStatus(), response.getMessage(),
+                    response.getProtocol(), response.getHeaders(), new CapturingInputStream(response, request),
+                    response.getTiming());
+            capturing.setRetries(response.getRetries());
+            capturing.setHedge(response.getHedge());
+            return capturing;
+        }
+        return response;
+    }
+
+    private boolean isStorable(HttpResponse response) {
+        if (response.getStatus() != 200) {
+            return false;
+        }
+        String cacheControl = response.getHeader("Cache-Control");
+        if (CacheControl.has(cacheControl, "no-store") || "*".equals(trim(response.getHeader("Vary")))) {
+            return false;
+        }
+        boolean hasValidators = response.getHeader("ETag") != null || response.getHeader("Last-Modified") != null;
+        if (!hasValidators && CacheControl.maxAge(cacheControl) <= 0) {
+            return false;
+        }
+        String contentLength = response.getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.trim()) <= cache.getMaxEntryBytes();
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static HttpResponse fromCache(CachedResponse cached, Map<String, List<String>> headers,
+                                          RequestTiming timing) {
+        return new HttpResponse(cached.getStatus(), cached.getMessage(), cached.getProtocol(),
+                headers, new ByteArrayInputStream(cached.getBody()), timing);
+    }
+
+    private static Request withValidators(Request request, CachedResponse cached) {
+        Request conditional = request.copy();
+
+        String etag = cached.getHeader("ETag");
+        if (etag != null && header(request.getHeaders(), "If-None-Match") == null) {
+            conditional.addHeader("If-None-Match", etag);
+        }
+        String lastModified = cached.getHeader("Last-Modified");
+        if (lastModified != null && header(request.getHeaders(), "If-Modified-Since") == null) {
+            conditional.addHeader("If-Modified-Since", lastModified);
+        }
+        return conditional;
+    }
+
+    // A 304 carries updated metadata (Cache-Control, ETag, Date...) but never the body headers
+    private static Map<String, List<String>> mergeHeaders(Map<String, List<String>> stored,
+                                                          Map<String, List<String>> update) {
+        Map<String, List<String>> merged = new LinkedHashMap<>(stored);
+        for (Map.Entry<String, List<String>> header : update.entrySet()) {
+            String name = header.getKey();
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Content-Encoding")
+                    || name.equalsIgnoreCase("Transfer-Encoding") || name.equalsIgnoreCase("Connection")) {
+                continue;
+            }
+            merged.keySet().removeIf(existing -> existing.equalsIgnoreCase(name));
+            merged.put(name, new ArrayList<>(header.getValue()));
+        }
+        return merged;
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    // Copies the body aside while the caller reads it and stores it once the end is reached.
+    // Bodies that grow past the entry limit, or are abandoned early, are not cached.
+    private class CapturingInputStream extends FilterInputStream {
+        private final HttpResponse response;
+        private final Request request;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingInputStream(HttpResponse response, Request request) {
+            super(response.getBody());
+            this.response = response;
+            this.request = request;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                finish();
+            } else if (copy != null) {
+                copy.write(b);
+                checkLimit();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n == -1) {
+                finish();
+            } else if (copy != null) {
+                copy.write(buffer, offset, n);
+                checkLimit();
+            }
+            return n;
+        }
+
+        private void checkLimit() {
+            if (copy.size() > cache.getMaxEntryBytes()) {
+                copy = null;
+            }
+        }
+
+        private void finish() {
+            if (copy == null) {
+                return;
+            }
+            CachedResponse cached = new CachedResponse(response.getStatus(), response.getMessage(),
+                    response.getProtocol(), response.getHeaders(), copy.toByteArray(), System.currentTimeMillis());
+            copy = null;
+            cache.store(request.getMethod(), request.getUrl(), request.getHeaders(), cached);
+        }
+
+        @Override
+        public void close() throws IOException {
+            copy = null;
+            super.close();
+        }
+    }
+}
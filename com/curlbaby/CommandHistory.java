@@ -1,66 +1,146 @@
 package com.curlbaby;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+// The command history every input path uses. Entries live in the shared HistoryLog, so commands
+// typed in other sessions show up here once this one returns to the prompt. If the log cannot
+// be opened the history is kept in memory for this session only.
 public class CommandHistory {
-    private final List<String> history;
+    private final HistoryLog log;
+    private final List<String> memory = new ArrayList<>();
+    private final HistorySearch search = new HistorySearch(this);
+    private long memoryGeneration;
     private int currentIndex;
-    
+
+    public CommandHistory(HistoryLog log) {
+        this.log = log;
+        this.currentIndex = size();
+    }
+
+    // A history that is not saved anywhere
     public CommandHistory() {
-        this.history = new ArrayList<>();
-        this.currentIndex = 0;
+        this(null);
     }
-    
+
+    public static CommandHistory open(UIManager uiManager) {
+        try {
+            CommandHistory history = new CommandHistory(HistoryLog.openDefault());
+            history.search.warmUp();
+            return history;
+        } catch (IOException e) {
+            uiManager.printWarning("Could not open command history, it will not be saved: " + e.getMessage());
+            return new CommandHistory();
+        }
+    }
+
     public void addCommand(String command) {
-        if (!command.trim().isEmpty()) { 
-            if (history.isEmpty() || !history.get(history.size() - 1).equals(command)) {
-                history.add(command);
-            } 
-            currentIndex = history.size();
+        if (!command.trim().isEmpty()) {
+            if (size() == 0 || !get(size() - 1).equals(command)) {
+                if (log == null) {
+                    memory.add(command);
+                } else {
+                    try {
+                        log.append(command);
+                    } catch (IOException e) {
+                        System.err.println("Error saving command to history: " + e.getMessage());
+                    }
+                }
+            }
+            resetNavigation();
         }
     }
-    
+
     public String getPreviousCommand() {
-        if (history.isEmpty()) {
+        if (size() == 0) {
             return "";
         }
-         
-        if (currentIndex == history.size()) {
-            currentIndex--;
-        } else if (currentIndex > 0) { 
+
+        if (currentIndex > 0) {
             currentIndex--;
         }
-         
-        return history.get(currentIndex);
+
+        return get(currentIndex);
     }
-    
+
     public String getNextCommand() {
-        if (history.isEmpty() || currentIndex >= history.size() - 1) { 
-            currentIndex = history.size();
+        if (size() == 0 || currentIndex >= size() - 1) {
+            currentIndex = size();
             return "";
         }
-        
-        
+
         currentIndex++;
-        return history.get(currentIndex);
+        return get(currentIndex);
     }
-    
-     
+
+    // True while an older command is shown instead of the line being typed
+    public boolean isBrowsing() {
+        return currentIndex < size();
+    }
+
+    // Back at the prompt, with whatever other sessions added in the meantime
     public void resetNavigation() {
-        currentIndex = history.size();
+        if (log != null) {
+            try {
+                log.refresh();
+            } catch (IOException e) {
+                System.err.println("Error reading command history: " + e.getMessage());
+            }
+        }
+        currentIndex = size();
     }
-    
+
     public void clear() {
-        history.clear();
+        if (log == null) {
+            memory.clear();
+            memoryGeneration++;
+        } else {
+            try {
+                log.clear();
+            } catch (IOException e) {
+                System.err.println("Error clearing command history: " + e.getMessage());
+            }
+        }
         currentIndex = 0;
     }
-    
+
+    // Changes when the entries are renumbered by a trim or a clear
+    public long getGeneration() {
+        return log != null ? log.getGeneration() : memoryGeneration;
+    }
+
+    public HistorySearch getSearch() {
+        return search;
+    }
+
     public int size() {
-        return history.size();
+        return log != null ? log.size() : memory.size();
     }
-    
-    public List<String> getAll() {
-        return new ArrayList<>(history);
+
+    public String get(int index) {
+        if (log == null) {
+            return memory.get(index);
+        }
+        try {
+            return log.get(index);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    // The last count commands, oldest first
+    public List<String> getRecent(int count) {
+        List<String> recent = new ArrayList<>();
+        for (int i = Math.max(0, size() - count); i < size(); i++) {
+            recent.add(get(i));
+        }
+        return recent;
+    }
+
+    public void close() {
+        if (log != null) {
+            log.close();
+        }
     }
-}
\ No newline at end of file
+}
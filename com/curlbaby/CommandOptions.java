@@ -0,0 +1,183 @@
+package com.curlbaby;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CommandOptions {
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, List<String>> options = new HashMap<>();
+    
+    // Options listed in flagNames take no value; every other -x/--name consumes the next token
+    public static CommandOptions parse(String argument, String... flagNames) {
+        Set<String> flags = new HashSet<>(Arrays.asList(flagNames));
+        CommandOptions result = new CommandOptions();
+        List<String> tokens = tokenize(argument);
+        
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.startsWith("-") && token.length() > 1 && !isNumber(token)) {
+                String name = token.startsWith("--") ? token.substring(2) : token.substring(1);
+                String value = null;
+                int equals = name.indexOf('=');
+                if (equals > 0) {
+                    value = name.substring(equals + 1);
+                    name = name.substring(0, equals);
+                } else if (!flags.contains(name) && i + 1 < tokens.size()) {
+                    value = tokens.get(++i);
+                }
+                result.options.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+            } else {
+                result.positional.add(token);
+            }
+        }
+        return result;
+    }
+    
+    static List<String> tokenize(String argument) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        boolean inToken = false;
+        
+        for (int i = 0; i < argument.length(); i++) {
+            char c = argument.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                current.append(c);
+                inToken = true;
+            }
+        }
+        if (inToken) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+    
+    private static boolean isNumber(String token) {
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+    
+    public List<String> getPositional() {
+        return positional;
+    }
+    
+    public String getPositional(int index) {
+        return index < positional.size() ? positional.get(index) : null;
+    }
+    
+    public boolean has(String name) {
+        return options.containsKey(name);
+    }
+    
+    public String get(String name) {
+        List<String> values = options.get(name);
+        return values != null ? values.get(values.size() - 1) : null;
+    }
+    
+    public String get(String name, String defaultValue) {
+        String value = get(name);
+        return value != null ? value : defaultValue;
+    }
+    
+    public List<String> getAll(String name) {
+        return options.getOrDefault(name, new ArrayList<>());
+    }
+    
+    // Accepts 250ms, 30s, 5m, 1h; a bare number means seconds
+    public long getDurationMillis(String name, long defaultValue) {
+        String value = get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return parseDurationMillis(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " expects a duration like 30s or 5m, got: " + value);
+        }
+    }
+    
+    public static long parseDurationMillis(String value) {
+        String text = value.trim().toLowerCase();
+        long unit = 1000;
+        if (text.endsWith("ms")) {
+            unit = 1;
+            text = text.substring(0, text.length() - 2);
+        } else if (text.endsWith("s")) {
+            text = text.substring(0, text.length() - 1);
+        } else if (text.endsWith("m")) {
+            unit = 60_000;
+            text = text.substring(0, text.length() - 1);
+        } else if (text.endsWith("h")) {
+            unit = 3_600_000;
+            text = text.substring(0, text.length() - 1);
+        }
+        return (long) (Double.parseDouble(text) * unit);
+    }
+    
+    // Accepts 500/s, 1200/m or a bare number of requests per second
+    public double getRatePerSecond(String name, double defaultValue) {
+        String value = get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        String[] parts = value.trim().toLowerCase().split("/", 2);
+        double perUnit = 1;
+        if (parts.length == 2) {
+            switch (parts[1]) {
+                case "s":
+                case "sec":
+                    break;
+                case "m":
+                case "min":
+                    perUnit = 60;
+                    break;
+                case "h":
+                    perUnit = 3600;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown rate unit in --" + name + ": " + value);
+            }
+        }
+        try {
+            return Double.parseDouble(parts[0]) / perUnit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " expects a rate like 500/s, got: " + value);
+        }
+    }
+    
+    public int getInt(String name, int defaultValue) {
+        String value = get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option -" + name + " expects a number, got: " + value);
+        }
+    }
+}
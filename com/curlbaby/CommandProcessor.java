@@ -1,16 +1,29 @@
 package com.curlbaby;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import com.curlbaby.HttpRequestHandler.Request;
+
 public class CommandProcessor {
+    // Every command processCommand accepts, plus history, which the input loop handles itself
+    public static final List<String> COMMANDS = Arrays.asList(
+            "exit", "help", "get", "post", "put", "delete", "group", "api", "run", "bench",
+            "pool", "transport", "cache", "retry", "limit", "history");
+    
     private final UIManager uiManager;
     private final HttpRequestHandler requestHandler;
     private final ApiCollectionManager apiCollectionManager;
     private final ApiCollectionCommands apiCollectionCommands;
+    private final TransportCommands transportCommands;
     
-    public CommandProcessor(UIManager uiManager, HttpRequestHandler requestHandler) {
+    public CommandProcessor(UIManager uiManager, HttpRequestHandler requestHandler, Prompter prompter,
+                            ApiCollectionManager apiCollectionManager) {
         this.uiManager = uiManager;
         this.requestHandler = requestHandler;
-        this.apiCollectionManager = new ApiCollectionManager(uiManager);
-        this.apiCollectionCommands = new ApiCollectionCommands(apiCollectionManager, uiManager, requestHandler);
+        this.apiCollectionManager = apiCollectionManager;
+        this.apiCollectionCommands = new ApiCollectionCommands(apiCollectionManager, uiManager, requestHandler, prompter);
+        this.transportCommands = new TransportCommands(uiManager, requestHandler, apiCollectionManager);
     }
     
     public void processCommand(String command, String argument) {
@@ -18,7 +31,7 @@ public class CommandProcessor {
         switch (command) {
             case "exit":
                 uiManager.printExitMessage();
-                apiCollectionManager.close();
+                close();
                 System.exit(0);
                 break;
             case "help":
@@ -26,9 +39,9 @@ public class CommandProcessor {
                 break;
             case "get":
                 if (argument.isEmpty()) {
-                    uiManager.printError("Usage: get <url>");
+                    uiManager.printError("Usage: get <url> [-o <file> [--segments <n>]]");
                 } else {
-                    requestHandler.executeGetRequest(argument);
+                    executeGet(argument);
                 }
                 break;
             case "post": 
@@ -57,12 +70,153 @@ public class CommandProcessor {
             case "run":
                 apiCollectionCommands.handleCommand(command, argument);
                 break;
+            case "bench":
+                runBenchmark(argument);
+                break;
+            case "pool":
+            case "transport":
+            case "cache":
+            case "retry":
+            case "limit":
+                transportCommands.handleCommand(command, argument);
+                break;
             default:
                 uiManager.printError("Unknown command: " + command);
                 System.out.println("Type 'help' for available commands");
         }
     }
     
+    public void close() {
+        apiCollectionManager.close();
+        requestHandler.close();
+    }
+    
+    private void executeGet(String argument) {
+        CommandOptions options = CommandOptions.parse(argument);
+        String output = options.get("o", options.get("output"));
+        if (output == null) {
+            requestHandler.executeGetRequest(argument);
+            return;
+        }
+        String url = options.getPositional(0);
+        if (url == null) {
+            uiManager.printError("Usage: get <url> -o <file> [--segments <n>]");
+            return;
+        }
+        int segments;
+        try {
+            segments = options.getInt("segments", 1);
+        } catch (IllegalArgumentException e) {
+            uiManager.printError(e.getMessage());
+            return;
+        }
+        if (segments < 1) {
+            uiManager.printError("Segment count must be positive");
+            return;
+        }
+        requestHandler.downloadToFile(new Request("GET", url), output, segments);
+    }
+    
+    private void runBenchmark(String argument) {
+        CommandOptions options = CommandOptions.parse(argument);
+        String idArgument = options.getPositional(0);
+        if (idArgument == null) {
+            uiManager.printError("Usage: bench <request-id> [-n <requests>] [-c <concurrency>]");
+            uiManager.printError("       bench <request-id> --rate <n/s> --duration <time> [-c <max-in-flight>]");
+            return;
+        }
+        
+        boolean openLoop = options.has("rate");
+        int requestId;
+        int totalRequests;
+        int concurrency;
+        double rate = 0;
+        long durationMillis = 0;
+        try {
+            requestId = Integer.parseInt(idArgument);
+            totalRequests = options.getInt("n", 1000);
+            concurrency = options.getInt("c", openLoop ? 1000 : 16);
+            if (openLoop) {
+                rate = options.getRatePerSecond("rate", 0);
+                durationMillis = options.getDurationMillis("duration", 10_000);
+                if (rate <= 0 || durationMillis <= 0) {
+                    uiManager.printError("Rate and duration must be positive");
+                    return;
+                }
+                totalRequests = (int) Math.max(1, Math.min(Integer.MAX_VALUE, rate * durationMillis / 1000.0));
+            }
+        } catch (NumberFormatException e) {
+            uiManager.printError("Invalid request ID: " + idArgument);
+            return;
+        } catch (IllegalArgumentException e) {
+            uiManager.printError(e.getMessage());
+            return;
+        }
+        if (totalRequests < 1 || concurrency < 1) {
+            uiManager.printError("Request count and concurrency must be positive");
+            return;
+        }
+        concurrency = Math.min(concurrency, totalRequests);
+        
+        Map<String, Object> saved = apiCollectionManager.getRequestById(requestId);
+        if (saved == null) {
+            uiManager.printError("API request not found with ID: " + requestId);
+            return;
+        }
+        Request request = Request.fromSavedRequest(saved);
+        request.setUrl(HttpRequestHandler.normalizeUrl(request.getUrl()));
+        
+        RetryPolicy retryPolicy = request.getRetryPolicy() != null
+                ? request.getRetryPolicy() : requestHandler.getDefaultRetryPolicy();
+        // A hedged request holds a second connection while it races the first
+        int connections = retryPolicy != null && retryPolicy.allowsHedge(request.getMethod())
+                ? concurrency * 2 : concurrency;
+        
+        HttpTransport transport = requestHandler.getTransport();
+        ConnectionPool pool = requestHandler.getConnectionPool();
+        int maxPerHost = pool.getMaxPerHost();
+        int maxIdle = pool.getMaxIdlePerHost();
+        boolean pooled = transport.getName().equals("h1");
+        if (pooled && connections > maxPerHost) {
+            // Otherwise workers would queue on the pool instead of on the server
+            pool.setMaxPerHost(connections);
+            pool.setMaxIdlePerHost(connections);
+        }
+        
+        if (openLoop) {
+            uiManager.printInfo(String.format("Benchmarking [%s] %s: %.1f req/s for %.1f s, up to %d in flight on %s (%s)",
+                    request.getMethod(), saved.get("name"), rate, durationMillis / 1000.0, concurrency,
+                    WorkerThreads.describe(), transport.getName()));
+        } else {
+            uiManager.printInfo(String.format("Benchmarking [%s] %s: %d requests, %d workers on %s (%s)",
+                    request.getMethod(), saved.get("name"), totalRequests, concurrency,
+                    WorkerThreads.describe(), transport.getName()));
+        }
+        if (retryPolicy != null) {
+            uiManager.printInfo("Retry policy: " + retryPolicy.toSpec());
+        }
+        HostLimits.Limiter limiter = requestHandler.getHostLimits().forUrl(request.getUrl());
+        if (limiter != null) {
+            uiManager.printInfo("Host limit " + limiter.getRule().getPattern() + ": " + limiter.getRule().describe());
+        }
+        
+        LoadTester loadTester = new LoadTester(uiManager, transport);
+        try {
+            LoadTester.Result result = openLoop
+                    ? loadTester.runOpenLoop(request, rate, durationMillis, concurrency)
+                    : loadTester.runClosedLoop(request, totalRequests, concurrency);
+            loadTester.printResult(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            uiManager.printError("Benchmark interrupted");
+        } finally {
+            if (pooled) {
+                pool.setMaxPerHost(maxPerHost);
+                pool.setMaxIdlePerHost(maxIdle);
+            }
+        }
+    }
+    
     // private void printHelp() {
     //     uiManager.printInfo("\nBasic Commands:");
     //     uiManager.printInfo("  help - Display this help message");
@@ -101,9 +255,16 @@ public class CommandProcessor {
     });
 
     printSection("Request Commands", new String[][]{
+        {"get <url> -o <file>", "Stream the response body straight to a file"},
+        {"get <url> -o <file> --segments <n>", "Download in n parallel byte ranges, resumable"},
         {"get <url>", "Execute a GET request to the specified URL"},
+        {"get|delete <url> -H \"Name: value\"", "Add a request header; repeatable"},
         {"post <url>", "Execute a POST request to the specified URL"},
         {"put <url>", "Execute a PUT request to the specified URL"},
+        {"post|put <url> --body-file <path>", "Stream a file as the request body"},
+        {"post|put <url> --body-file <path> --chunked", "Same, with Transfer-Encoding: chunked"},
+        {"post|put <url> --form <k=v> --file <k=@path>", "Send a multipart/form-data body, streaming the files"},
+        {"post|put <url> -d <body> [--content-type <t>]", "Send a body without prompting; -H adds headers"},
         {"delete <url>", "Execute a DELETE request to the specified URL"}
     });
 
@@ -116,15 +277,64 @@ public class CommandProcessor {
         {"group delete <id>", "Delete a group"},
         {"api", "Manage API requests"},
         {"api save <group_id|group_name> <name>", "Save current or new API request to a group"},
+        {"api save <group> <name> --method <m> --url <u>", "Same without prompts; also -H, -d, --body-file, --description"},
         {"api list <group_id|group_name>", "List all APIs in a group"},
         {"api show <id>", "Show details of a specific API request"},
         {"api delete <id>", "Delete an API request"},
-        {"run <id>", "Execute a saved API request"}
+        {"run <id>", "Execute a saved API request"},
+        {"run <id> -o <file>", "Save the response body of a saved request to a file"},
+        {"run group <id|name> [--parallel <n>]", "Execute every request in a group and print a summary table"}
+    });
+
+    printSection("Benchmark Commands", new String[][]{
+        {"bench <id> [-n <requests>] [-c <workers>]", "Load test a saved request and report latency percentiles"},
+        {"bench <id> --rate <n/s> --duration <time>", "Constant-rate load test, latency measured from scheduled start"}
     });
 
+    printSection("Connection Commands", new String[][]{
+        {"transport <h1|h2>", "Switch between pooled HTTP/1.1 and multiplexed HTTP/2"},
+        {"pool stats", "Show connection pool hits, misses and evictions"},
+        {"pool set <max-idle|max-per-host> <n>", "Change connection pool limits"},
+        {"pool set idle-timeout <seconds>", "Close idle connections after this long"},
+        {"pool clear", "Close all idle connections"}
+    });
+
+    printSection("Cache Commands", new String[][]{
+        {"cache <on|off>", "Cache GET responses and revalidate them with ETag/Last-Modified"},
+        {"cache stats", "Show hits, revalidations, misses and memory/disk usage"},
+        {"cache disk <on|off>", "Also keep cached responses in ~/.curlbaby/cache"},
+        {"cache size <MB>", "Memory budget for cached responses"},
+        {"cache clear", "Remove all cached responses"}
+    });
+
+    printSection("Retry Commands", new String[][]{
+        {"retry", "Show the default retry policy and stored group/request policies"},
+        {"retry set <policy>", "Default policy, e.g. attempts=4 status=429,5xx backoff=100ms..5s"},
+        {"retry group <id|name> <policy|off>", "Store a retry policy for every request in a group"},
+        {"retry request <id> <policy|off>", "Store a retry policy for one saved request"},
+        {"retry help", "List policy keys: attempts, status, errors, methods, backoff, budget, hedge"}
+    });
+
+    printSection("Host Limit Commands", new String[][]{
+        {"limit", "Show host limits and how often they held requests back"},
+        {"limit set <pattern> --rate <n/s> [--burst <n>]", "Cap requests per second to matching hosts"},
+        {"limit set <pattern> --concurrency <n>", "Cap requests in flight to matching hosts"},
+        {"limit remove <pattern>", "Remove a host limit"},
+        {"limit clear", "Remove all host limits"}
+    });
+
+    printSection("Script Mode", new String[][]{
+        {"curlbaby <command> [arguments]", "Run one command and exit, e.g. curlbaby get example.com"},
+        {"curlbaby --script <file|->", "Run commands from a file or stdin with no prompts"},
+        {"curlbaby --script <file> --yes", "Also confirm deletions"},
+        {"curlbaby --script <file> --fail-fast", "Stop at the first failing command"}
+    });
+    
     printSection("History Commands", new String[][]{
         {"history", "Display command history"},
-        {"history clear", "Clear command history"}
+        {"history clear", "Clear command history"},
+        {"Ctrl-R", "Search history as you type; Ctrl-R again for older matches"},
+        {"Tab", "Complete commands, group and request names, and URLs"}
     });
 }
 
@@ -0,0 +1,274 @@
+package com.curlbaby;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ConnectionPool {
+    private final Map<String, Deque<PooledConnection>> idleConnections = new HashMap<>();
+    private final Map<String, Integer> leasedConnections = new HashMap<>();
+
+    private int maxIdlePerHost = 5;
+    private int maxPerHost = 10;
+    private long idleTimeoutMillis = 30000;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // Returns an idle connection for the host, or null when the caller should open a new one.
+    // In the latter case a slot is reserved and must be given back via release() or discard().
+    public PooledConnection lease(String hostKey, long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (true) {
+            PooledConnection connection = reserve(hostKey, deadline);
+            if (connection == null) {
+                return null;
+            }
+            // The probe waits up to a millisecond, so it runs without holding the pool
+            if (connection.isStale()) {
+                connection.closeQuietly();
+                evictReserved(hostKey);
+                continue;
+            }
+            recordHit();
+            return connection;
+        }
+    }
+
+    // Takes an idle connection, or reserves a slot for a new one (null), counted as leased either way
+    private synchronized PooledConnection reserve(String hostKey, long deadline) throws IOException {
+        while (true) {
+            Deque<PooledConnection> idle = idleConnections.get(hostKey);
+            while (idle != null && !idle.isEmpty()) {
+                PooledConnection connection = idle.pollFirst();
+                if (connection.isExpired(idleTimeoutMillis)) {
+                    connection.closeQuietly();
+                    evictions++;
+                    continue;
+                }
+                leasedConnections.merge(hostKey, 1, Integer::sum);
+                return connection;
+            }
+
+            if (leasedConnections.getOrDefault(hostKey, 0) < maxPerHost) {
+                leasedConnections.merge(hostKey, 1, Integer::sum);
+                misses++;
+                return null;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("Timed out waiting for a free connection to " + hostKey);
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a connection to " + hostKey);
+            }
+        }
+    }
+
+    private synchronized void recordHit() {
+        hits++;
+    }
+
+    // A reserved idle connection turned out to be stale
+    private synchronized void evictReserved(String hostKey) {
+        decrementLeased(hostKey);
+        evictions++;
+        notifyAll();
+    }
+
+    public synchronized void release(PooledConnection connection, boolean reusable) {
+        decrementLeased(connection.getHostKey());
+
+        if (reusable && !connection.getSocket().isClosed()) {
+            Deque<PooledConnection> idle = idleConnections.computeIfAbsent(
+                    connection.getHostKey(), k -> new ArrayDeque<>());
+            connection.touch();
+            idle.addFirst(connection);
+            while (idle.size() > maxIdlePerHost) {
+                idle.pollLast().closeQuietly();
+                evictions++;
+            }
+        } else {
+            connection.closeQuietly();
+        }
+        notifyAll();
+    }
+
+    // Gives back a slot reserved by lease() when no connection could be established
+    public synchronized void discard(String hostKey) {
+        decrementLeased(hostKey);
+        notifyAll();
+    }
+
+    private void decrementLeased(String hostKey) {
+        int leased = leasedConnections.getOrDefault(hostKey, 0) - 1;
+        if (leased > 0) {
+            leasedConnections.put(hostKey, leased);
+        } else {
+            leasedConnections.remove(hostKey);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Deque<PooledConnection> idle : idleConnections.values()) {
+            for (PooledConnection connection : idle) {
+                connection.closeQuietly();
+                evictions++;
+            }
+        }
+        idleConnections.clear();
+        notifyAll();
+    }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized Map<String, int[]> getHostStats() {
+        Map<String, int[]> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, Deque<PooledConnection>> entry : idleConnections.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                stats.put(entry.getKey(), new int[]{entry.getValue().size(), 0});
+            }
+        }
+        for (Map.Entry<String, Integer> entry : leasedConnections.entrySet()) {
+            stats.computeIfAbsent(entry.getKey(), k -> new int[2])[1] = entry.getValue();
+        }
+        return stats;
+    }
+
+    public synchronized int getMaxIdlePerHost() {
+        return maxIdlePerHost;
+    }
+
+    public synchronized void setMaxIdlePerHost(int maxIdlePerHost) {
+        this.maxIdlePerHost = maxIdlePerHost;
+        for (Deque<PooledConnection> idle : idleConnections.values()) {
+            while (idle.size() > maxIdlePerHost) {
+                idle.pollLast().closeQuietly();
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    public synchronized void setMaxPerHost(int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+        notifyAll();
+    }
+
+    public synchronized long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public synchronized void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public static class PooledConnection {
+        private final String hostKey;
+        private final Socket socket;
+        private final BufferedInputStream in;
+        private final OutputStream out;
+        private long lastUsed;
+
+        public PooledConnection(String hostKey, Socket socket) throws IOException {
+            this.hostKey = hostKey;
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 16384);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 16384);
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        public String getHostKey() {
+            return hostKey;
+        }
+
+        public Socket getSocket() {
+            return socket;
+        }
+
+        public BufferedInputStream getInputStream() {
+            return in;
+        }
+
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        boolean isExpired(long idleTimeoutMillis) {
+            return System.currentTimeMillis() - lastUsed > idleTimeoutMillis;
+        }
+
+        // An idle keep-alive connection is stale if the server closed it or sent unexpected bytes
+        boolean isStale() {
+            if (socket.isClosed() || socket.isInputShutdown()) {
+                return true;
+            }
+            int originalTimeout = 0;
+            try {
+                originalTimeout = socket.getSoTimeout();
+                socket.setSoTimeout(1);
+                in.mark(1);
+                int b = in.read();
+                if (b != -1) {
+                    in.reset();
+                }
+                return true;
+            } catch (SocketTimeoutException e) {
+                return false;
+            } catch (IOException e) {
+                return true;
+            } finally {
+                try {
+                    socket.setSoTimeout(originalTimeout);
+                } catch (IOException e) {
+                    // Socket already gone, the next use will fail and discard it
+                }
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing a broken socket, nothing to report
+            }
+        }
+    }
+}
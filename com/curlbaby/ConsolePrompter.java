@@ -0,0 +1,47 @@
+package com.curlbaby;
+
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+// Reads answers from standard input. There is exactly one of these per process: several
+// Scanners on System.in would each buffer ahead and swallow lines meant for the others. On a
+// terminal the session owns standard input, so answers are read through it instead, with raw
+// mode suspended for the terminal's own line editing.
+public class ConsolePrompter implements Prompter {
+    private final UIManager uiManager;
+    private final TerminalSession terminal;
+    private final Scanner scanner = new Scanner(System.in);
+
+    public ConsolePrompter(UIManager uiManager, TerminalSession terminal) {
+        this.uiManager = uiManager;
+        this.terminal = terminal;
+    }
+
+    @Override
+    public String readLine(String prompt) {
+        if (prompt != null) {
+            uiManager.printInputPrompt(prompt);
+        }
+        if (terminal != null) {
+            System.out.flush();
+            terminal.suspend();
+            return terminal.readLine();
+        }
+        try {
+            return scanner.nextLine();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean confirm(String prompt) {
+        String answer = ask(prompt).toLowerCase();
+        return answer.equals("y") || answer.equals("yes");
+    }
+
+    @Override
+    public boolean isInteractive() {
+        return true;
+    }
+}
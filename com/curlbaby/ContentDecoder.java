@@ -0,0 +1,163 @@
+package com.curlbaby;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// Undoes Content-Encoding while the body streams in. Only codings the JDK can inflate are
+// offered to servers, so anything else reaching decode() is a server ignoring Accept-Encoding.
+public class ContentDecoder {
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private ContentDecoder() {
+    }
+
+    public static boolean isIdentity(String contentEncoding) {
+        return contentEncoding == null || contentEncoding.trim().isEmpty()
+                || contentEncoding.trim().equalsIgnoreCase("identity");
+    }
+
+    // Codings are listed in the order they were applied, so they are undone from the last one
+    public static InputStream decode(String contentEncoding, InputStream in) throws IOException {
+        String[] codings = contentEncoding.split(",");
+        InputStream decoded = in;
+        for (int i = codings.length - 1; i >= 0; i--) {
+            String coding = codings[i].trim().toLowerCase();
+            switch (coding) {
+                case "gzip":
+                case "x-gzip":
+                case "deflate":
+                    decoded = new LazyDecoder(coding, decoded);
+                    break;
+                case "identity":
+                case "":
+                    break;
+                default:
+                    throw new IOException("Unsupported Content-Encoding: " + coding);
+            }
+        }
+        return new DecodedInputStream(decoded, in);
+    }
+
+    private static InputStream open(String coding, InputStream in) throws IOException {
+        return coding.equals("deflate") ? inflate(in) : new GZIPInputStream(in, 8192);
+    }
+
+    // "deflate" is meant to be zlib-wrapped, but some servers send raw deflate data; the zlib
+    // header is recognisable, so peek at it to pick the right inflater
+    private static InputStream inflate(InputStream in) throws IOException {
+        PushbackInputStream peek = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int n = 0;
+        while (n < 2) {
+            int read = peek.read(header, n, 2 - n);
+            if (read == -1) {
+                break;
+            }
+            n += read;
+        }
+        peek.unread(header, 0, n);
+
+        boolean zlib = n == 2 && (header[0] & 0x0F) == 8
+                && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new InflaterInputStream(peek, new Inflater(!zlib), 8192);
+    }
+
+    // Sets up the decoder on the first read: GZIPInputStream reads the header as soon as it is
+    // made, which would hold the status line back until compressed bytes arrive. An empty body,
+    // as on a 204 or an error with Content-Length: 0, decodes to an empty body.
+    private static class LazyDecoder extends InputStream {
+        private final String coding;
+        private final InputStream encoded;
+        private InputStream decoder;
+        private boolean empty;
+
+        LazyDecoder(String coding, InputStream encoded) {
+            this.coding = coding;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open() ? decoder.read() : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return open() ? decoder.read(buffer, offset, length) : -1;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decoder != null ? decoder.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoder != null) {
+                decoder.close();
+            } else {
+                encoded.close();
+            }
+        }
+
+        private boolean open() throws IOException {
+            if (decoder == null && !empty) {
+                PushbackInputStream peek = new PushbackInputStream(encoded, 1);
+                int first = peek.read();
+                if (first == -1) {
+                    empty = true;
+                } else {
+                    peek.unread(first);
+                    decoder = ContentDecoder.open(coding, peek);
+                }
+            }
+            return decoder != null;
+        }
+    }
+
+    // Reports readiness from the encoded stream, since inflater streams claim data is always
+    // available, and reads the encoded stream to its end so the connection can be reused
+    private static class DecodedInputStream extends FilterInputStream {
+        private final InputStream encoded;
+
+        DecodedInputStream(InputStream decoded, InputStream encoded) {
+            super(decoded);
+            this.encoded = encoded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                drainEncoded();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n == -1) {
+                drainEncoded();
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return encoded.available();
+        }
+
+        private void drainEncoded() throws IOException {
+            byte[] skip = new byte[512];
+            while (encoded.read(skip) != -1) {
+                // Trailing bytes after the compressed stream, usually none
+            }
+        }
+    }
+}
@@ -1,61 +1,66 @@
 package com.curlbaby;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Scanner;
-import java.io.Console;
 
 public class CurlBabyApp {
     private static final UIManager uiManager = new UIManager();
-    private static final HttpRequestHandler requestHandler = new HttpRequestHandler(uiManager);
-    private static final CommandProcessor commandProcessor = new CommandProcessor(uiManager, requestHandler);
-    private static final Scanner scanner = new Scanner(System.in);
-    private static final List<String> commandHistory = new ArrayList<>();
-    private static int historyIndex = 0;
-    private static final String HISTORY_FILE = System.getProperty("user.home") + "/.curlbaby_history";
+    private static Prompter prompter;
+    private static CommandProcessor commandProcessor;
+    private static CommandHistory history;
+    private static final int HISTORY_SHOWN = 100;
     
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runNonInteractive(args));
+        }
+        
+        TerminalSession terminal = TerminalSession.open();
+        prompter = new ConsolePrompter(uiManager, terminal);
+        ApiCollectionManager collections = newCollectionManager();
+        commandProcessor = newCommandProcessor(prompter, collections);
         uiManager.printWelcomeScreen();
-        loadCommandHistory();
+        history = CommandHistory.open(uiManager);
         
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            saveCommandHistory();
+            history.close();
         }));
-         
-        Console console = System.console();
-        boolean supportsArrowKeys = (console != null);
         
-        if (supportsArrowKeys) {
-            uiManager.printInfo("Tip: Use UP and DOWN arrow keys to navigate command history");
+        // Without a terminal, lines are read whole and there is no key handling
+        ConsoleReader reader = null;
+        if (terminal != null) {
+            reader = new ConsoleReader(uiManager, history, terminal);
+            reader.setCompleter(new TabCompleter(history, collections));
+            uiManager.printInfo("Tip: Use UP and DOWN arrow keys to navigate command history, Tab to complete");
         }
         
         while (true) {
-            uiManager.printPrompt();
-            String input;
-            
-            if (supportsArrowKeys) {
-                // Read input with potential arrow key handling
-                input = readLineWithArrows();
+            String line;
+            if (reader != null) {
+                history.resetNavigation();
+                line = reader.readLine();
             } else {
-                // Fallback to regular scanner
-                input = scanner.nextLine().trim();
+                uiManager.printPrompt();
+                line = prompter.readLine(null);
             }
+            // End of input ends the session
+            if (line == null) {
+                commandProcessor.processCommand("exit", "");
+                return;
+            }
+            String input = line.trim();
             
             if (input.isEmpty()) {
                 continue;
             }
             
             // Add command to history if it's not a duplicate of the last command
-            if (commandHistory.isEmpty() || !commandHistory.get(commandHistory.size() - 1).equals(input)) {
-                commandHistory.add(input);
-                historyIndex = commandHistory.size();
-            }
+            history.addCommand(input);
             
             String[] commandParts = input.split("\\s+", 2);
             String command = commandParts[0].toLowerCase();
@@ -63,8 +68,7 @@ public class CurlBabyApp {
             
             if (command.equals("history")) {
                 if (argument.equals("clear")) {
-                    commandHistory.clear();
-                    historyIndex = 0;
+                    history.clear();
                     uiManager.printSuccess("Command history cleared");
                 } else if (argument.isEmpty()) {
                     printHistory();
@@ -76,141 +80,108 @@ public class CurlBabyApp {
         }
     }
      
-    private static String readLineWithArrows() {
-        try { 
-            StringBuilder buffer = new StringBuilder();
-             
-            while (true) {
-                int c = System.in.read();
-                
-                 
-                if (c == '\n' || c == '\r') {
-                    System.out.println();  
-                    break;
-                }
-                 
-                if (c == 127 || c == 8) {
-                    if (buffer.length() > 0) {
-                        buffer.deleteCharAt(buffer.length() - 1);
-                        
-                        System.out.print("\b \b");
-                    }
-                    continue;
-                } 
-                if (c == 27) { 
-                    if (System.in.available() > 0 && System.in.read() == 91) { // [
-                        if (System.in.available() > 0) {
-                            int arrowType = System.in.read();
-                            
-                            if (arrowType == 65) { 
-                                if (historyIndex > 0) {
-                                    historyIndex--;
-                                     
-                                    clearLine(buffer.length());
-                                     
-                                    buffer = new StringBuilder(commandHistory.get(historyIndex));
-                                    System.out.print(buffer.toString());
-                                }
-                            } else if (arrowType == 66) {  
-                                if (historyIndex < commandHistory.size() - 1) {
-                                    historyIndex++;
-                                    
-                                    // Clear current line
-                                    clearLine(buffer.length());
-                                    
-                                    // Set buffer to next command
-                                    buffer = new StringBuilder(commandHistory.get(historyIndex));
-                                    System.out.print(buffer.toString());
-                                } else if (historyIndex == commandHistory.size() - 1) {
-                                    // At the end of history, clear the line
-                                    historyIndex++;
-                                    clearLine(buffer.length());
-                                    buffer = new StringBuilder();
-                                }
-                            }
-                        }
-                    }
-                    continue;
-                }
-                
-                // Regular character - add to buffer and echo
-                if (c >= 32 && c < 127) { // Printable ASCII
-                    buffer.append((char)c);
-                    System.out.print((char)c);
-                }
-            }
-            
-            return buffer.toString().trim();
-            
-        } catch (IOException e) {
-            // Fallback to scanner if any error occurs
-            scanner.nextLine(); // Clear the scanner buffer
-            return scanner.nextLine().trim();
-        }
+    private static ApiCollectionManager newCollectionManager() {
+        return new ApiCollectionManager(uiManager, ApiCollectionManager.openDatabase());
     }
     
-    // Helper method to clear the current line
-    private static void clearLine(int length) {
-        // Move cursor to beginning, print spaces, and move back again
-        System.out.print("\r");
-        uiManager.printPrompt();
-        for (int i = 0; i < length; i++) {
-            System.out.print(" ");
-        }
-        System.out.print("\r");
-        uiManager.printPrompt();
+    private static CommandProcessor newCommandProcessor(Prompter prompter, ApiCollectionManager collections) {
+        HttpRequestHandler handler = new HttpRequestHandler(uiManager, prompter, collections);
+        return new CommandProcessor(uiManager, handler, prompter, collections);
     }
     
-    private static void loadCommandHistory() {
-        File historyFile = new File(HISTORY_FILE);
-        if (historyFile.exists()) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(historyFile))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (!line.trim().isEmpty()) {
-                        commandHistory.add(line);
+    // curlbaby [--yes] <command> [arguments]: runs one command, e.g. curlbaby get example.com
+    // curlbaby --script <file|-> [--yes] [--fail-fast]: runs a file of commands
+    // Neither shows the banner or asks questions. The exit code is 1 if a command failed and
+    // 2 if the arguments or the script could not be used.
+    private static int runNonInteractive(String[] args) {
+        String script = null;
+        boolean assumeYes = false;
+        boolean failFast = false;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); i++) {
+            switch (args[i]) {
+                case "--script":
+                    if (i + 1 == args.length) {
+                        return printUsage();
                     }
-                }
-                historyIndex = commandHistory.size();
+                    script = args[++i];
+                    break;
+                case "--yes":
+                case "-y":
+                    assumeYes = true;
+                    break;
+                case "--fail-fast":
+                    failFast = true;
+                    break;
+                default:
+                    uiManager.printError("Unknown option: " + args[i]);
+                    return printUsage();
+            }
+        }
+        boolean hasCommand = i < args.length;
+        if (hasCommand == (script != null)) {
+            return printUsage();
+        }
+        
+        Prompter nonInteractive = new ScriptPrompter(assumeYes);
+        CommandProcessor processor = newCommandProcessor(nonInteractive, newCollectionManager());
+        ScriptRunner runner = new ScriptRunner(uiManager, processor, failFast);
+        try {
+            if (hasCommand) {
+                return runner.runCommand(args[i].toLowerCase(), joinArguments(args, i + 1));
+            }
+            try (BufferedReader reader = script.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+                return runner.run(reader);
             } catch (IOException e) {
-                uiManager.printWarning("Could not load command history: " + e.getMessage());
+                uiManager.printError("Cannot read script " + script + ": " + e.getMessage());
+                return 2;
             }
+        } finally {
+            processor.close();
         }
     }
     
-    private static void saveCommandHistory() {
-        try {
-            File historyFile = new File(HISTORY_FILE);
-            if (!historyFile.exists()) {
-                historyFile.createNewFile();
-            }
-            
-            // Keep only the last 100 commands
-            List<String> historyToSave = commandHistory;
-            if (commandHistory.size() > 100) {
-                historyToSave = commandHistory.subList(commandHistory.size() - 100, commandHistory.size());
+    private static int printUsage() {
+        uiManager.printError("Usage: curlbaby [--yes] <command> [arguments]");
+        uiManager.printError("       curlbaby --script <file|-> [--yes] [--fail-fast]");
+        return 2;
+    }
+    
+    // The shell already split the arguments; quote the ones with spaces so commands see them whole
+    private static String joinArguments(String[] args, int from) {
+        StringBuilder argument = new StringBuilder();
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            if (argument.length() > 0) {
+                argument.append(' ');
             }
-            
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(historyFile))) {
-                for (String cmd : historyToSave) {
-                    writer.write(cmd);
-                    writer.newLine();
-                }
+            if (arg.isEmpty() || arg.matches(".*[\\s\"'].*")) {
+                char quote = arg.indexOf('"') >= 0 ? '\'' : '"';
+                argument.append(quote).append(arg).append(quote);
+            } else {
+                argument.append(arg);
             }
-        } catch (IOException e) {
-            System.err.println("Error saving command history: " + e.getMessage());
         }
+        return argument.toString();
     }
     
     private static void printHistory() {
-        if (commandHistory.isEmpty()) {
+        int total = history.size();
+        if (total == 0) {
             uiManager.printInfo("Command history is empty");
             return;
         }
         
+        List<String> recent = history.getRecent(HISTORY_SHOWN);
         System.out.println("\n" + uiManager.getBoldYellow() + "Command History:" + uiManager.getReset());
-        for (int i = 0; i < commandHistory.size(); i++) {
-            System.out.printf("  %3d  %s\n", i + 1, commandHistory.get(i));
+        int number = total - recent.size();
+        for (String command : recent) {
+            System.out.printf("  %3d  %s\n", ++number, command);
+        }
+        if (total > recent.size()) {
+            uiManager.printInfo("Showing the last " + recent.size() + " of " + total + " commands");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package com.curlbaby;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A SQLite file shared by everything that persists to it. Writes go through one connection
+// under a lock, so concurrent workers queue here instead of failing with SQLITE_BUSY, and in
+// WAL mode a few reader connections keep answering while a write is in progress. Statements
+// are prepared once per connection and reused. Nothing is opened until the first call.
+public class Database {
+    private static final int MAX_READERS = 4;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+    private final File file;
+    private final Work<?> schema;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<Handle> idleReaders = new ArrayBlockingQueue<>(MAX_READERS);
+    private final List<Handle> readers = new ArrayList<>();
+    private Handle writer;
+    private boolean closed;
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Handle handle) throws SQLException;
+    }
+
+    // The schema work runs once, in the first transaction on the file
+    public Database(File file, Work<?> schema) {
+        this.file = file;
+        this.schema = schema;
+    }
+
+    // A database file under ~/.curlbaby
+    public static File dataFile(String name) {
+        return new File(new File(System.getProperty("user.home"), ".curlbaby"), name);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Runs the work as one transaction; it is rolled back if the work throws
+    public <T> T write(Work<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            Handle handle = writer();
+            try {
+                T result = work.run(handle);
+                handle.connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    handle.connection.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Runs the work on a reader connection; it sees every committed write
+    public <T> T read(Work<T> work) throws SQLException {
+        Handle handle = borrowReader();
+        try {
+            return work.run(handle);
+        } finally {
+            idleReaders.offer(handle);
+        }
+    }
+
+    private synchronized Handle writer() throws SQLException {
+        if (closed) {
+            throw new SQLException("Database is closed: " + file);
+        }
+        if (writer == null) {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            Handle handle = open();
+            try {
+                // WAL is a property of the file and must be set outside a transaction
+                handle.execute("PRAGMA journal_mode = WAL");
+                handle.execute("PRAGMA synchronous = NORMAL");
+                handle.connection.setAutoCommit(false);
+                schema.run(handle);
+                handle.connection.commit();
+            } catch (SQLException e) {
+                handle.close();
+                throw e;
+            }
+            writer = handle;
+        }
+        return writer;
+    }
+
+    private Handle borrowReader() throws SQLException {
+        Handle handle = idleReaders.poll();
+        if (handle != null) {
+            return handle;
+        }
+        synchronized (this) {
+            // The writer creates the file and its schema before anyone reads it
+            writer();
+            if (readers.size() < MAX_READERS) {
+                handle = open();
+                readers.add(handle);
+                return handle;
+            }
+        }
+        try {
+            return idleReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+    }
+
+    private Handle open() throws SQLException {
+        Handle handle = new Handle(DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath()));
+        handle.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+        handle.execute("PRAGMA foreign_keys = ON");
+        return handle;
+    }
+
+    public void close() {
+        writeLock.lock();
+        try {
+            synchronized (this) {
+                closed = true;
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+                for (Handle reader : readers) {
+                    reader.close();
+                }
+                readers.clear();
+                idleReaders.clear();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public static class Handle {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        Handle(Connection connection) {
+            this.connection = connection;
+        }
+
+        // Cached for this connection: close the result sets, never the statement
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        public void execute(String sql) throws SQLException {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        }
+
+        private void close() {
+            try {
+                for (PreparedStatement statement : statements.values()) {
+                    statement.close();
+                }
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+}
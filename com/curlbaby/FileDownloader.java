@@ -0,0 +1,411 @@
+package com.curlbaby;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.curlbaby.HttpRequestHandler.Request;
+
+// Saves a response body to a file through FileChannel.transferFrom. Bytes go from the
+// connection to the file without being decoded, so the file size is not limited by the heap.
+// With several segments the file is fetched as concurrent byte ranges, and progress is kept in
+// a sidecar file so an interrupted download picks up where it stopped.
+public class FileDownloader {
+    private static final long CHUNK_SIZE = 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+    private static final String SIDECAR_SUFFIX = ".curlbaby-part";
+    private static final int SEGMENT_ATTEMPTS = 3;
+
+    private final UIManager uiManager;
+    private final HttpTransport transport;
+
+    public FileDownloader(UIManager uiManager, HttpTransport transport) {
+        this.uiManager = uiManager;
+        this.transport = transport;
+    }
+
+    public void download(Request request, File target) {
+        download(request, target, 1);
+    }
+
+    public void download(Request request, File target, int segments) {
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory()) {
+            uiManager.printError("Directory does not exist: " + parent);
+            return;
+        }
+
+        // Ask for the bytes exactly as stored on the server, unless the caller chose otherwise
+        if (header(request, "Accept-Encoding") == null) {
+            request.addHeader("Accept-Encoding", "identity");
+        }
+
+        uiManager.printRequestInfo(request.getUrl(), request.getMethod().toLowerCase());
+        HttpResponse response = null;
+        try {
+            if (segments > 1) {
+                // A one-byte range tells whether the server supports ranges and how large the file is
+                Request probe = request.copy();
+                probe.addHeader("Range", "bytes=0-0");
+                response = transport.execute(probe);
+                if (response.getStatus() == 206) {
+                    downloadSegments(request, response, target, segments);
+                    return;
+                }
+                if (response.getStatus() == 200) {
+                    uiManager.printInfo("Server does not support range requests; downloading in a single stream");
+                }
+            } else {
+                response = transport.execute(request);
+            }
+            uiManager.printStatusInfo(response.getStatus(), response.getMessage(), response.getProtocol());
+            if (response.getStatus() >= 400) {
+                uiManager.recordFailure();
+                uiManager.printWarning("Saving the error response body anyway");
+            }
+            String contentEncoding = response.getHeader("Content-Encoding");
+            if (!ContentDecoder.isIdentity(contentEncoding)) {
+                uiManager.printWarning("Server sent " + contentEncoding + " encoded data; it is saved as received");
+            }
+
+            long expected = contentLength(response);
+            long written = transfer(response, target, expected);
+            System.out.print("\r\033[2K");
+            System.out.flush();
+
+            RequestTiming timing = response.getTiming();
+            long elapsed = timing != null ? timing.getTotal() : 0;
+            uiManager.printSuccess("Saved " + uiManager.formatBytes(written) + " to " + target.getAbsolutePath());
+            if (elapsed > 0) {
+                uiManager.printInfo(String.format("Downloaded in %s (%s/s)", uiManager.formatDuration(elapsed),
+                        uiManager.formatBytes((long) (written / (elapsed / 1e9)))));
+            }
+            if (expected >= 0 && written != expected) {
+                uiManager.printWarning("Expected " + expected + " bytes but received " + written);
+            }
+        } catch (IOException e) {
+            System.out.print("\r\033[2K");
+            uiManager.printError("Download failed: " + e.getMessage());
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private void downloadSegments(Request request, HttpResponse probe, File target, int segments) throws IOException {
+        long total = totalFromContentRange(probe.getHeader("Content-Range"));
+        String validator = validator(probe);
+        drain(probe);
+        if (total <= 0) {
+            throw new IOException("Server did not report the file size in Content-Range");
+        }
+
+        uiManager.printStatusInfo(probe.getStatus(), probe.getMessage(), probe.getProtocol());
+        File sidecar = new File(target.getPath() + SIDECAR_SUFFIX);
+        Segment[] parts = loadSidecar(sidecar, target, request.getUrl(), total, validator);
+        if (parts != null) {
+            uiManager.printInfo("Resuming: " + uiManager.formatBytes(totalDone(parts)) + " of "
+                    + uiManager.formatBytes(total) + " already downloaded");
+        } else {
+            parts = split(total, Math.max(1, (int) Math.min(segments, total)));
+            try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+                file.setLength(total);
+            }
+        }
+        uiManager.printInfo(String.format("Downloading %s in %d segments", uiManager.formatBytes(total), parts.length));
+
+        long start = System.nanoTime();
+        long alreadyDone = totalDone(parts);
+        boolean complete;
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            ExecutorService executor = WorkerThreads.newExecutor("segment");
+            for (Segment part : parts) {
+                if (!part.isComplete()) {
+                    executor.execute(() -> fetchSegment(request, part, channel, validator));
+                }
+            }
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(250, TimeUnit.MILLISECONDS)) {
+                    printProgress(totalDone(parts) - alreadyDone, total - alreadyDone, System.nanoTime() - start);
+                    saveSidecar(sidecar, request.getUrl(), total, validator, parts);
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            complete = totalDone(parts) == total;
+            if (complete) {
+                channel.force(false);
+            }
+        } finally {
+            System.out.print("\r\033[2K");
+            System.out.flush();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        if (!complete) {
+            saveSidecar(sidecar, request.getUrl(), total, validator, parts);
+            boolean reported = false;
+            for (Segment part : parts) {
+                if (part.error != null) {
+                    uiManager.printError("Segment " + part.start + "-" + part.end + ": " + part.error);
+                    reported = true;
+                }
+            }
+            if (!reported) {
+                // Interrupted: nothing was printed as an error, but the file is still incomplete
+                uiManager.recordFailure();
+            }
+            uiManager.printWarning(uiManager.formatBytes(totalDone(parts)) + " of " + uiManager.formatBytes(total)
+                    + " downloaded; run the same command again to resume");
+            return;
+        }
+
+        sidecar.delete();
+        long fetched = total - alreadyDone;
+        uiManager.printSuccess("Saved " + uiManager.formatBytes(total) + " to " + target.getAbsolutePath());
+        uiManager.printInfo(String.format("Downloaded %s in %s (%s/s) over %d connections",
+                uiManager.formatBytes(fetched), uiManager.formatDuration(elapsed),
+                uiManager.formatBytes((long) (fetched / (elapsed / 1e9))), parts.length));
+    }
+
+    // If-Range only accepts a strong ETag or a date, so a weak ETag gives way to Last-Modified;
+    // null when the server sent neither
+    private static String validator(HttpResponse response) {
+        String etag = response.getHeader("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.getHeader("Last-Modified");
+    }
+
+    // Fetches what is left of one range, retrying from the last written byte on failure
+    private void fetchSegment(Request request, Segment part, FileChannel channel, String validator) {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (int attempt = 1; attempt <= SEGMENT_ATTEMPTS && !part.isComplete(); attempt++) {
+            Request range = request.copy();
+            range.addHeader("Range", "bytes=" + part.position() + "-" + part.end);
+            if (validator != null) {
+                // If the file changed since the download started, the server answers 200 instead of 206
+                range.addHeader("If-Range", validator);
+            }
+            HttpResponse response = null;
+            try {
+                response = transport.execute(range);
+                if (response.getStatus() != 206) {
+                    part.error = "server answered " + response.getStatus() + " instead of 206;"
+                            + " the file may have changed, delete it to start over";
+                    return;
+                }
+                InputStream body = response.getBody();
+                long position = part.position();
+                int n;
+                while ((n = body.read(buffer.array())) != -1) {
+                    if (position + n > part.end + 1) {
+                        throw new IOException("server sent more than the requested range");
+                    }
+                    buffer.clear().limit(n);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    part.done.addAndGet(n);
+                }
+                part.error = part.isComplete() ? null : "connection closed early";
+            } catch (IOException e) {
+                part.error = e.getMessage();
+            } finally {
+                if (response != null) {
+                    response.close();
+                }
+            }
+        }
+    }
+
+    private static Segment[] split(long total, int count) {
+        Segment[] parts = new Segment[count];
+        long size = total / count;
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            long end = i == count - 1 ? total - 1 : start + size - 1;
+            parts[i] = new Segment(start, end, 0);
+        }
+        return parts;
+    }
+
+    private static long totalDone(Segment[] parts) {
+        long done = 0;
+        for (Segment part : parts) {
+            done += part.done.get();
+        }
+        return done;
+    }
+
+    // The sidecar only counts bytes that were already written, so resuming never leaves a hole
+    private static void saveSidecar(File sidecar, String url, long total, String validator, Segment[] parts) {
+        Properties state = new Properties();
+        state.setProperty("url", url);
+        state.setProperty("total", String.valueOf(total));
+        if (validator != null) {
+            state.setProperty("validator", validator);
+        }
+        state.setProperty("segments", String.valueOf(parts.length));
+        for (int i = 0; i < parts.length; i++) {
+            state.setProperty("segment." + i, parts[i].start + "," + parts[i].end + "," + parts[i].done.get());
+        }
+
+        File temp = new File(sidecar.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            state.store(out, "curlbaby download state");
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+        }
+    }
+
+    // Returns the saved segments if the sidecar belongs to this exact download, otherwise null
+    // Without a validator there is no telling whether the file changed since, so it starts over
+    private static Segment[] loadSidecar(File sidecar, File target, String url, long total, String validator) {
+        if (validator == null || !sidecar.isFile() || !target.isFile() || target.length() != total) {
+            return null;
+        }
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(sidecar)) {
+            state.load(in);
+            if (!url.equals(state.getProperty("url"))
+                    || total != Long.parseLong(state.getProperty("total", "-1"))
+                    || !validator.equals(state.getProperty("validator"))) {
+                return null;
+            }
+            int count = Integer.parseInt(state.getProperty("segments", "0"));
+            Segment[] parts = new Segment[count];
+            for (int i = 0; i < count; i++) {
+                String[] fields = state.getProperty("segment." + i, "").split(",");
+                parts[i] = new Segment(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+            }
+            return count > 0 ? parts : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long totalFromContentRange(String contentRange) {
+        // bytes 0-0/12345
+        if (contentRange == null || contentRange.indexOf('/') < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void drain(HttpResponse response) throws IOException {
+        InputStream body = response.getBody();
+        byte[] skip = new byte[512];
+        while (body.read(skip) != -1) {
+            // Let the connection go back to the pool
+        }
+    }
+
+    private static String header(Request request, String name) {
+        for (java.util.Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private long transfer(HttpResponse response, File target, long expected) throws IOException {
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ReadableByteChannel in = Channels.newChannel(response.getBody())) {
+            long position = 0;
+            long start = System.nanoTime();
+            long nextProgress = start;
+            while (true) {
+                long n = out.transferFrom(in, position, CHUNK_SIZE);
+                if (n == 0) {
+                    // A blocking stream channel only comes back empty at end of stream
+                    break;
+                }
+                position += n;
+
+                long now = System.nanoTime();
+                if (now >= nextProgress) {
+                    printProgress(position, expected, now - start);
+                    nextProgress = now + PROGRESS_INTERVAL_NANOS;
+                }
+            }
+            return position;
+        }
+    }
+
+    private void printProgress(long written, long expected, long elapsedNanos) {
+        String rate = elapsedNanos > 0
+                ? uiManager.formatBytes((long) (written / (elapsedNanos / 1e9))) + "/s"
+                : "-";
+        if (expected > 0) {
+            System.out.printf("\r\033[2K  %s / %s (%d%%)  %s", uiManager.formatBytes(written),
+                    uiManager.formatBytes(expected), written * 100 / expected, rate);
+        } else {
+            System.out.printf("\r\033[2K  %s  %s", uiManager.formatBytes(written), rate);
+        }
+        System.out.flush();
+    }
+
+    private static long contentLength(HttpResponse response) {
+        String value = response.getHeader("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Segment {
+        private final long start;
+        private final long end;
+        private final AtomicLong done;
+        private volatile String error;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = new AtomicLong(done);
+        }
+
+        long position() {
+            return start + done.get();
+        }
+
+        boolean isComplete() {
+            return position() > end;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.curlbaby;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Streams a file as the request body, so uploads are not limited by the heap
+public class FileRequestBody implements RequestBody {
+    private final File file;
+
+    public FileRequestBody(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public long contentLength() {
+        return file.length();
+    }
+
+    @Override
+    public InputStream open() throws IOException {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public String describe() {
+        return "<file " + file.getPath() + ", " + file.length() + " bytes>";
+    }
+}
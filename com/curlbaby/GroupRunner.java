@@ -0,0 +1,155 @@
+package com.curlbaby;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.curlbaby.HttpRequestHandler.Request;
+
+// Runs every saved request of a group on a fixed number of workers. Workers only record
+// results; everything is printed afterwards as one table, so output never interleaves.
+public class GroupRunner {
+    private final UIManager uiManager;
+    private final HttpTransport transport;
+
+    public GroupRunner(UIManager uiManager, HttpTransport transport) {
+        this.uiManager = uiManager;
+        this.transport = transport;
+    }
+
+    public Result[] run(List<Map<String, Object>> savedRequests, int parallel) throws InterruptedException {
+        Result[] results = new Result[savedRequests.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorService executor = WorkerThreads.newExecutor("group");
+
+        for (int i = 0; i < Math.min(parallel, results.length); i++) {
+            executor.execute(() -> {
+                byte[] buffer = new byte[16384];
+                int index;
+                while ((index = next.getAndIncrement()) < results.length) {
+                    results[index] = execute(savedRequests.get(index), buffer);
+                    completed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+
+        try {
+            while (!executor.awaitTermination(250, TimeUnit.MILLISECONDS)) {
+                System.out.print("\r  " + completed.get() + "/" + results.length + " requests");
+                System.out.flush();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        } finally {
+            System.out.print("\r\033[2K");
+        }
+        return results;
+    }
+
+    private Result execute(Map<String, Object> saved, byte[] buffer) {
+        Result result = new Result(saved);
+        long start = System.nanoTime();
+        try {
+            Request request = Request.fromSavedRequest(saved);
+            request.setUrl(HttpRequestHandler.normalizeUrl(request.getUrl()));
+            HttpResponse response = transport.execute(request);
+            try {
+                InputStream body = response.getBody();
+                int n;
+                while ((n = body.read(buffer)) != -1) {
+                    result.bytes += n;
+                }
+            } finally {
+                response.close();
+            }
+            result.status = response.getStatus();
+            result.retries = response.getRetries();
+            result.hedged = response.getHedge() != null;
+        } catch (IOException | RuntimeException e) {
+            result.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        result.latencyNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public void printResults(Result[] results, long wallNanos) {
+        System.out.printf("  %-5s %-7s %-28s %-8s %10s %10s%n", "ID", "Method", "Name", "Status", "Time", "Size");
+        int failures = 0;
+        int retries = 0;
+        int hedged = 0;
+        long totalLatency = 0;
+        for (Result result : results) {
+            totalLatency += result.latencyNanos;
+            retries += result.retries;
+            hedged += result.hedged ? 1 : 0;
+            String status;
+            String color;
+            if (result.error != null) {
+                status = "ERROR";
+                color = uiManager.getBoldRed();
+            } else {
+                status = String.valueOf(result.status);
+                color = uiManager.getStatusColor(result.status);
+            }
+            if (result.isFailure()) {
+                failures++;
+            }
+            System.out.printf("  %-5s %-7s %-28s %s%-8s%s %10s %10s%n",
+                    result.id, result.method, truncate(result.name, 28),
+                    color, status, uiManager.getReset(),
+                    uiManager.formatDuration(result.latencyNanos),
+                    result.error != null ? "-" : uiManager.formatBytes(result.bytes));
+            if (result.error != null) {
+                System.out.println("        " + uiManager.getBoldRed() + result.error + uiManager.getReset());
+            }
+        }
+
+        System.out.println();
+        uiManager.printInfo(String.format("%d requests in %s wall time (%s if run one by one)",
+                results.length, uiManager.formatDuration(wallNanos), uiManager.formatDuration(totalLatency)));
+        if (retries > 0 || hedged > 0) {
+            uiManager.printInfo(String.format("%d retries, %d hedged requests", retries, hedged));
+        }
+        if (failures > 0) {
+            uiManager.recordFailure();
+            uiManager.printWarning(failures + " of " + results.length + " requests failed");
+        } else {
+            uiManager.printSuccess("All requests succeeded");
+        }
+    }
+
+    private static String truncate(String value, int width) {
+        if (value == null) {
+            return "";
+        }
+        return value.length() <= width ? value : value.substring(0, width - 1) + "…";
+    }
+
+    public static class Result {
+        private final Object id;
+        private final String method;
+        private final String name;
+        private int status;
+        private String error;
+        private long latencyNanos;
+        private long bytes;
+        private int retries;
+        private boolean hedged;
+
+        Result(Map<String, Object> saved) {
+            this.id = saved.get("id");
+            this.method = (String) saved.get("method");
+            this.name = (String) saved.get("name");
+        }
+
+        public boolean isFailure() {
+            return error != null || status >= 400;
+        }
+    }
+}
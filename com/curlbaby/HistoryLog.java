@@ -0,0 +1,389 @@
+package com.curlbaby;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+// An append-only log of commands shared by every curlbaby session of the user. Records go to
+// history.log as [length][timestamp][UTF-8 command]; history.idx holds the offset of each record,
+// so entry i is one lookup in the mapped index and one in the mapped log, however long the
+// history. Writers take an exclusive lock on history.lock and append at the current end of both
+// files, so sessions never overwrite each other. Once the log holds twice MAX_ENTRIES it is
+// rewritten to the newest MAX_ENTRIES under a new generation and renamed over the old files;
+// sessions notice the new files on their next append or refresh.
+public class HistoryLog implements Closeable {
+    public static final int MAX_ENTRIES = 10000;
+
+    private static final int LOG_MAGIC = 0x43424c47;   // "CBLG"
+    private static final int INDEX_MAGIC = 0x43424958; // "CBIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int OFFSET_SIZE = 8;
+    private static final int MAX_COMMAND_BYTES = 1 << 20;
+
+    // FileLock is held per process, so threads of this process take turns before asking for it
+    private static final ReentrantLock PROCESS_LOCK = new ReentrantLock();
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final FileChannel lockChannel;
+    private FileChannel log;
+    private FileChannel index;
+    private long generation;
+    private MappedByteBuffer logMap;
+    private MappedByteBuffer indexMap;
+
+    public HistoryLog(File dir) throws IOException {
+        Files.createDirectories(dir.toPath());
+        this.logPath = new File(dir, "history.log").toPath();
+        this.indexPath = new File(dir, "history.idx").toPath();
+        this.lockChannel = FileChannel.open(new File(dir, "history.lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        Lock lock = lock();
+        try {
+            open();
+        } finally {
+            lock.close();
+        }
+    }
+
+    // ~/.curlbaby/history.*; a new log starts with the commands of the old ~/.curlbaby_history
+    public static HistoryLog openDefault() throws IOException {
+        File dir = new File(System.getProperty("user.home"), ".curlbaby");
+        boolean fresh = !new File(dir, "history.log").exists();
+        HistoryLog historyLog = new HistoryLog(dir);
+        File legacy = new File(System.getProperty("user.home"), ".curlbaby_history");
+        if (fresh && legacy.isFile()) {
+            historyLog.importLines(Files.readAllLines(legacy.toPath(), StandardCharsets.UTF_8));
+        }
+        return historyLog;
+    }
+
+    // Changes whenever the log is trimmed or cleared, which renumbers the entries
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized int size() {
+        try {
+            return (int) ((index.size() - HEADER_SIZE) / OFFSET_SIZE);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public synchronized String get(int i) throws IOException {
+        long offset = offsetOf(i);
+        int length = logRegion(offset, RECORD_HEADER_SIZE).getInt((int) offset);
+        ByteBuffer data = logRegion(offset + RECORD_HEADER_SIZE, length).duplicate();
+        data.position((int) offset + RECORD_HEADER_SIZE);
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public synchronized long getTimestamp(int i) throws IOException {
+        long offset = offsetOf(i);
+        return logRegion(offset, RECORD_HEADER_SIZE).getLong((int) offset + 4);
+    }
+
+    public synchronized void append(String command) throws IOException {
+        Lock lock = lock();
+        try {
+            switchIfReplaced();
+            appendRecord(command, System.currentTimeMillis());
+            if (size() >= 2 * MAX_ENTRIES) {
+                rewrite(size() - MAX_ENTRIES);
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    public synchronized void clear() throws IOException {
+        Lock lock = lock();
+        try {
+            switchIfReplaced();
+            rewrite(size());
+        } finally {
+            lock.close();
+        }
+    }
+
+    // Picks up the files another session put in place when it trimmed or cleared the log
+    public synchronized void refresh() throws IOException {
+        if (isReplaced()) {
+            Lock lock = lock();
+            try {
+                switchIfReplaced();
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    private synchronized void importLines(List<String> lines) throws IOException {
+        Lock lock = lock();
+        try {
+            if (size() > 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int from = Math.max(0, lines.size() - MAX_ENTRIES);
+            for (String line : lines.subList(from, lines.size())) {
+                if (!line.trim().isEmpty()) {
+                    appendRecord(line, now);
+                }
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    // Must hold the lock
+    private void open() throws IOException {
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logMap = null;
+        indexMap = null;
+
+        if (log.size() < HEADER_SIZE) {
+            generation = ThreadLocalRandom.current().nextLong();
+            log.truncate(0);
+            writeHeader(log, LOG_MAGIC, generation);
+        } else {
+            generation = readGeneration(log, LOG_MAGIC);
+        }
+        if (index.size() < HEADER_SIZE || readGeneration(index, INDEX_MAGIC) != generation) {
+            // Missing, or left behind by a session that stopped between renaming the two files
+            index.truncate(0);
+            writeHeader(index, INDEX_MAGIC, generation);
+        }
+        recover();
+    }
+
+    // Indexes records that a session wrote to the log but died before indexing, and cuts off a
+    // record that was only partly written
+    private void recover() throws IOException {
+        int count = size();
+        long end = HEADER_SIZE;
+        while (count > 0) {
+            long offset = offsetOf(count - 1);
+            long recordEnd = recordEnd(offset);
+            if (recordEnd > 0) {
+                end = recordEnd;
+                break;
+            }
+            count--;
+        }
+        index.truncate(HEADER_SIZE + (long) count * OFFSET_SIZE);
+        indexMap = null;
+
+        long logSize = log.size();
+        while (end < logSize) {
+            long recordEnd = recordEnd(end);
+            if (recordEnd < 0) {
+                break;
+            }
+            writeOffset(end);
+            end = recordEnd;
+        }
+        if (end < logSize) {
+            log.truncate(end);
+        }
+        logMap = null;
+    }
+
+    // The end of the record at offset, or -1 if it is not complete
+    private long recordEnd(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if (offset < HEADER_SIZE || log.read(header, offset) < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        int length = header.getInt(0);
+        long end = offset + RECORD_HEADER_SIZE + length;
+        return length >= 0 && length <= MAX_COMMAND_BYTES && end <= log.size() ? end : -1;
+    }
+
+    // Must hold the lock
+    private void appendRecord(String command, long timestamp) throws IOException {
+        byte[] bytes = command.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_COMMAND_BYTES) {
+            throw new IOException("Command too long for the history log");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length);
+        record.putInt(bytes.length).putLong(timestamp).put(bytes).flip();
+        // The record goes in before its offset, so a counted entry is always complete
+        long offset = log.size();
+        writeFully(log, record, offset);
+        writeOffset(offset);
+    }
+
+    private void writeOffset(long offset) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(OFFSET_SIZE);
+        entry.putLong(offset).flip();
+        writeFully(index, entry, index.size());
+    }
+
+    // Must hold the lock: copies entries from keepFrom on into new files and renames them in
+    private void rewrite(int keepFrom) throws IOException {
+        Path logTmp = logPath.resolveSibling("history.log.tmp");
+        Path indexTmp = indexPath.resolveSibling("history.idx.tmp");
+        long newGeneration = ThreadLocalRandom.current().nextLong();
+        try (FileChannel newLog = FileChannel.open(logTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(indexTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(newLog, LOG_MAGIC, newGeneration);
+            writeHeader(newIndex, INDEX_MAGIC, newGeneration);
+            int count = size();
+            if (keepFrom < count) {
+                long start = offsetOf(keepFrom);
+                long shift = start - HEADER_SIZE;
+                ByteBuffer offsets = ByteBuffer.allocate((count - keepFrom) * OFFSET_SIZE);
+                for (int i = keepFrom; i < count; i++) {
+                    offsets.putLong(offsetOf(i) - shift);
+                }
+                offsets.flip();
+                writeFully(newIndex, offsets, HEADER_SIZE);
+                long length = log.size() - start;
+                for (long copied = 0; copied < length; ) {
+                    copied += log.transferTo(start + copied, length - copied, newLog.position(HEADER_SIZE + copied));
+                }
+            }
+            newLog.force(true);
+            newIndex.force(true);
+        }
+        // Windows will not replace a file that is still open or mapped
+        closeChannels();
+        try {
+            Files.move(logTmp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // The new files if both moves went through; otherwise whatever is in place, which
+            // open() makes consistent again
+            open();
+        }
+    }
+
+    // True when the file at logPath is no longer the one this session has open: another session
+    // rewrote it under a new generation, or it was deleted. The generation in the header is
+    // compared rather than file identity, which not every platform reports.
+    private boolean isReplaced() throws IOException {
+        try (FileChannel current = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            return current.size() < HEADER_SIZE || readGeneration(current, LOG_MAGIC) != generation;
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+    }
+
+    private void switchIfReplaced() throws IOException {
+        if (isReplaced()) {
+            closeChannels();
+            open();
+        }
+    }
+
+    private long offsetOf(int i) throws IOException {
+        long position = HEADER_SIZE + (long) i * OFFSET_SIZE;
+        if (i < 0 || position + OFFSET_SIZE > index.size()) {
+            throw new IOException("No history entry " + i);
+        }
+        if (indexMap == null || indexMap.capacity() < position + OFFSET_SIZE) {
+            indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+        }
+        return indexMap.getLong((int) position);
+    }
+
+    // The mapped log, remapped if it does not yet reach the given region
+    private ByteBuffer logRegion(long offset, int length) throws IOException {
+        if (logMap == null || logMap.capacity() < offset + length) {
+            if (offset + length > log.size()) {
+                throw new IOException("History log is truncated");
+            }
+            logMap = log.map(FileChannel.MapMode.READ_ONLY, 0, log.size());
+        }
+        return logMap;
+    }
+
+    private static void writeHeader(FileChannel channel, int magic, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(magic).putInt(VERSION).putLong(generation).flip();
+        writeFully(channel, header, 0);
+    }
+
+    private static long readGeneration(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != magic || header.getInt(4) != VERSION) {
+            throw new IOException("Not a curlbaby history file");
+        }
+        return header.getLong(8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private Lock lock() throws IOException {
+        PROCESS_LOCK.lock();
+        try {
+            return new Lock(lockChannel.lock());
+        } catch (IOException | RuntimeException e) {
+            PROCESS_LOCK.unlock();
+            throw e;
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        logMap = null;
+        indexMap = null;
+        if (log != null) {
+            log.close();
+        }
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeChannels();
+            lockChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing history log: " + e.getMessage());
+        }
+    }
+
+    private static class Lock implements Closeable {
+        private final FileLock fileLock;
+
+        Lock(FileLock fileLock) {
+            this.fileLock = fileLock;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                fileLock.release();
+            } finally {
+                PROCESS_LOCK.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.curlbaby;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Case-insensitive substring search over the command history. Every entry is indexed by the
+// three-character sequences it contains, so a query only looks at entries that have all of the
+// query's trigrams, and typing one more character narrows the previous candidates instead of
+// starting over. The index is built on first use, or ahead of time by warmUp(), and then extended
+// with new entries; it is rebuilt when the history is trimmed or cleared.
+public class HistorySearch {
+    private final CommandHistory history;
+    private final List<String> entries = new ArrayList<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private long generation;
+
+    // The candidates of the last query, so a longer query can start from them
+    private String lastQuery;
+    private int[] lastCandidates;
+
+    public HistorySearch(CommandHistory history) {
+        this.history = history;
+    }
+
+    // The index of the newest entry before the given one that contains the query, or -1
+    public synchronized int findBefore(String query, int before) {
+        update();
+        String needle = query.toLowerCase(Locale.ROOT);
+        if (needle.isEmpty()) {
+            return -1;
+        }
+        before = Math.min(before, entries.size());
+        if (needle.length() < 3) {
+            // Too short for trigrams; matches this short are common, so the newest one is close by
+            for (int i = before - 1; i >= 0; i--) {
+                if (entries.get(i).contains(needle)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int[] candidates = candidates(needle);
+        int position = Arrays.binarySearch(candidates, before);
+        for (int i = (position >= 0 ? position : -position - 1) - 1; i >= 0; i--) {
+            // Having every trigram does not mean having them in order
+            if (entries.get(candidates[i]).contains(needle)) {
+                return candidates[i];
+            }
+        }
+        return -1;
+    }
+
+    public synchronized String get(int index) {
+        return history.get(index);
+    }
+
+    public synchronized int size() {
+        update();
+        return entries.size();
+    }
+
+    // Builds the index on a background thread so the first Ctrl-R does not wait for it
+    public void warmUp() {
+        Thread thread = new Thread(this::size, "curlbaby-history-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Entries holding all trigrams of the query, in ascending order
+    private int[] candidates(String needle) {
+        int[] result = null;
+        Set<Long> applied = new HashSet<>();
+        if (lastQuery != null && lastQuery.length() >= 3 && needle.contains(lastQuery)) {
+            // Those candidates already have every trigram of the last query
+            result = lastCandidates;
+            for (int i = 0; i + 3 <= lastQuery.length(); i++) {
+                applied.add(trigram(lastQuery, i));
+            }
+        }
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            long key = trigram(needle, i);
+            if (!applied.add(key)) {
+                continue;
+            }
+            Postings list = postings.get(key);
+            if (list == null) {
+                lists = null;
+                result = new int[0];
+                break;
+            }
+            lists.add(list);
+        }
+        if (lists != null) {
+            // Rarest first, so the candidates are as few as possible from the start
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            for (Postings list : lists) {
+                result = result == null ? list.toArray() : intersect(result, list);
+                if (result.length == 0) {
+                    break;
+                }
+            }
+        }
+        lastQuery = needle;
+        lastCandidates = result;
+        return result;
+    }
+
+    private static int[] intersect(int[] sorted, Postings list) {
+        int[] out = new int[Math.min(sorted.length, list.size)];
+        int n = 0;
+        if ((long) sorted.length * 16 >= list.size) {
+            // Similar sizes: one pass over both
+            int j = 0;
+            for (int id : sorted) {
+                while (j < list.size && list.ids[j] < id) {
+                    j++;
+                }
+                if (j == list.size) {
+                    break;
+                }
+                if (list.ids[j] == id) {
+                    out[n++] = id;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        // Few candidates: look each one up, however long the list
+        int from = 0;
+        for (int id : sorted) {
+            int found = Arrays.binarySearch(list.ids, from, list.size, id);
+            if (found >= 0) {
+                out[n++] = id;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+            if (from == list.size) {
+                break;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private void update() {
+        long current = history.getGeneration();
+        int size = history.size();
+        if (current != generation || size < entries.size()) {
+            entries.clear();
+            postings.clear();
+            generation = current;
+        }
+        if (size == entries.size()) {
+            return;
+        }
+        for (int i = entries.size(); i < size; i++) {
+            add(history.get(i).toLowerCase(Locale.ROOT));
+        }
+        lastQuery = null;
+        lastCandidates = null;
+    }
+
+    private void add(String entry) {
+        int id = entries.size();
+        entries.add(entry);
+        for (int i = 0; i + 3 <= entry.length(); i++) {
+            // Ids only grow, so a repeated trigram in this entry is the list's last element
+            postings.computeIfAbsent(trigram(entry, i), key -> new Postings()).add(id);
+        }
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.curlbaby;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// Rate and concurrency caps per host pattern. Each host matching a rule gets its own token
+// bucket and semaphore, shared by every thread sending to that host.
+public class HostLimits {
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final Map<String, Optional<Limiter>> limiters = new ConcurrentHashMap<>();
+
+    // Replaces any rule with the same pattern; rate <= 0 or concurrency <= 0 means uncapped
+    public void set(String pattern, double ratePerSecond, int burst, int concurrency) {
+        rules.removeIf(rule -> rule.pattern.equals(pattern));
+        rules.add(new Rule(pattern, ratePerSecond, burst, concurrency));
+        limiters.clear();
+    }
+
+    public boolean remove(String pattern) {
+        boolean removed = rules.removeIf(rule -> rule.pattern.equals(pattern));
+        limiters.clear();
+        return removed;
+    }
+
+    public void clear() {
+        rules.clear();
+        limiters.clear();
+    }
+
+    public List<Rule> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    public Map<String, Optional<Limiter>> getLimiters() {
+        return limiters;
+    }
+
+    // The limiter for the URL's host, or null when no rule matches
+    public Limiter forUrl(String url) {
+        String host;
+        try {
+            URL parsed = new URL(url);
+            int port = parsed.getPort() != -1 ? parsed.getPort() : parsed.getDefaultPort();
+            host = parsed.getHost().toLowerCase() + ":" + port;
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        if (rules.isEmpty()) {
+            return null;
+        }
+        return limiters.computeIfAbsent(host, key -> Optional.ofNullable(match(key)).map(Limiter::new)).orElse(null);
+    }
+
+    // The most specific rule wins: the longest pattern matching host:port or just the host
+    private Rule match(String hostAndPort) {
+        String host = hostAndPort.substring(0, hostAndPort.lastIndexOf(':'));
+        Rule best = null;
+        for (Rule rule : rules) {
+            if ((rule.regex.matcher(hostAndPort).matches() || rule.regex.matcher(host).matches())
+                    && (best == null || rule.pattern.length() > best.pattern.length())) {
+                best = rule;
+            }
+        }
+        return best;
+    }
+
+    public static class Rule {
+        private final String pattern;
+        private final Pattern regex;
+        private final double ratePerSecond;
+        private final int burst;
+        private final int concurrency;
+
+        Rule(String pattern, double ratePerSecond, int burst, int concurrency) {
+            this.pattern = pattern.toLowerCase();
+            this.regex = Pattern.compile(globToRegex(this.pattern));
+            this.ratePerSecond = ratePerSecond;
+            this.burst = Math.max(1, burst);
+            this.concurrency = concurrency;
+        }
+
+        private static String globToRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public String describe() {
+            List<String> parts = new ArrayList<>();
+            if (ratePerSecond > 0) {
+                parts.add(String.format("%s req/s, burst %d", trim(ratePerSecond), burst));
+            }
+            if (concurrency > 0) {
+                parts.add(concurrency + " concurrent");
+            }
+            return parts.isEmpty() ? "no limit" : String.join(", ", parts);
+        }
+
+        private static String trim(double value) {
+            return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+        }
+    }
+
+    public static class Limiter {
+        private final Rule rule;
+        private final TokenBucket bucket;
+        private final Semaphore permits;
+        private final LongAdder queued = new LongAdder();
+
+        Limiter(Rule rule) {
+            this.rule = rule;
+            this.bucket = rule.ratePerSecond > 0 ? new TokenBucket(rule.ratePerSecond, rule.burst) : null;
+            this.permits = rule.concurrency > 0 ? new Semaphore(rule.concurrency, true) : null;
+        }
+
+        // Waits for a free slot, then for a token; the slot is given back through release()
+        public void acquire() throws InterruptedException {
+            if (permits != null) {
+                if (!permits.tryAcquire()) {
+                    queued.increment();
+                    permits.acquire();
+                }
+            }
+            if (bucket != null) {
+                try {
+                    bucket.acquire();
+                } catch (InterruptedException e) {
+                    release();
+                    throw e;
+                }
+            }
+        }
+
+        public void release() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+
+        public boolean capsConcurrency() {
+            return permits != null;
+        }
+
+        public Rule getRule() {
+            return rule;
+        }
+
+        public int getInFlight() {
+            return permits != null ? rule.concurrency - permits.availablePermits() : 0;
+        }
+
+        public long getQueued() {
+            return queued.sum();
+        }
+
+        public long getDelayed() {
+            return bucket != null ? bucket.getDelayed() : 0;
+        }
+
+        public long getDelayNanos() {
+            return bucket != null ? bucket.getDelayNanos() : 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.curlbaby;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.curlbaby.HttpRequestHandler.Request;
+
+public class Http2Transport implements HttpTransport {
+    // Headers the JDK client manages itself and refuses to accept from callers
+    private static final Set<String> RESTRICTED_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    public Http2Transport() {
+        this(5000, 5000);
+    }
+
+    public Http2Transport(int connectTimeout, int requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeout);
+    }
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public HttpResponse execute(Request request) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(request.getUrl())).timeout(requestTimeout);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL: " + request.getUrl());
+        }
+
+        boolean hasUserAgent = false;
+        boolean hasAcceptEncoding = false;
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase();
+            if (RESTRICTED_HEADERS.contains(name)) {
+                continue;
+            }
+            hasUserAgent |= name.equals("user-agent");
+            hasAcceptEncoding |= name.equals("accept-encoding");
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (!hasUserAgent) {
+            builder.header("User-Agent", "curlbaby");
+        }
+        if (!hasAcceptEncoding) {
+            // The JDK client does not decompress, so this is handled like on the h1 transport
+            builder.header("Accept-Encoding", ContentDecoder.ACCEPT_ENCODING);
+        }
+
+        RequestBody body = request.getRequestBody();
+        if (body != null && body.contentLength() != 0) {
+            // HTTP/2 frames the body itself, so chunked only means the length is not announced
+            HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(() -> {
+                try {
+                    return body.open();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (body.contentLength() > 0 && !request.isChunked()) {
+                publisher = HttpRequest.BodyPublishers.fromPublisher(publisher, body.contentLength());
+            }
+            builder.method(request.getMethod(), publisher);
+        } else {
+            builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+        }
+
+        // The JDK client hides connection setup, so everything before the headers counts as TTFB
+        RequestTiming timing = new RequestTiming();
+        java.net.http.HttpResponse<InputStream> response;
+        try {
+            response = client.send(builder.build(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+            timing.markFirstByte(timing.getStartedAt());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted");
+        }
+
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        response.headers().map().forEach((name, values) -> {
+            if (!name.startsWith(":")) {
+                headers.put(name, new ArrayList<>(values));
+            }
+        });
+
+        String protocol = response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+        return new HttpResponse(response.statusCode(), reasonPhrase(response.statusCode()),
+                protocol, headers, response.body(), timing);
+    }
+
+    // HTTP/2 has no reason phrase on the wire, so fill in the standard one for display
+    private static String reasonPhrase(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 303: return "See Other";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 415: return "Unsupported Media Type";
+            case 422: return "Unprocessable Entity";
+            case 429: return "Too Many Requests";
+            case 500: return "Internal Server Error";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            default: return "";
+        }
+    }
+
+    @Override
+    public void close() {
+        // HttpClient owns its connections and releases them when garbage collected
+    }
+}
@@ -1,154 +1,321 @@
 package com.curlbaby;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 public class HttpRequestHandler {
     private final UIManager uiManager;
     private final JsonFormatter jsonFormatter;
-    private final Scanner scanner;
+    private final ResponseRenderer responseRenderer;
+    private final Prompter prompter;
     private final ApiCollectionManager apiCollectionManager;
+    private final ConnectionPool connectionPool;
+    private final PooledHttpTransport pooledTransport;
+    private Http2Transport http2Transport;
+    private HttpTransport transport;
+    private final RetryingTransport retryingTransport;
+    private RetryPolicy defaultRetryPolicy;
+    private final HostLimits hostLimits;
+    private final HttpResponseCache responseCache;
+    private final HttpTransport cachingTransport;
     private Request lastExecutedRequest; // Store the last executed request
+    private RequestTiming lastTiming;
     
-    public HttpRequestHandler(UIManager uiManager) {
+    public HttpRequestHandler(UIManager uiManager, Prompter prompter, ApiCollectionManager apiCollectionManager) {
         this.uiManager = uiManager;
         this.jsonFormatter = new JsonFormatter();
-        this.scanner = new Scanner(System.in);
-        this.apiCollectionManager = new ApiCollectionManager(uiManager);
+        this.responseRenderer = new ResponseRenderer(jsonFormatter);
+        this.prompter = prompter;
+        this.apiCollectionManager = apiCollectionManager;
+        this.connectionPool = new ConnectionPool();
+        this.pooledTransport = new PooledHttpTransport(connectionPool);
+        this.transport = pooledTransport;
+        this.responseCache = new HttpResponseCache();
+        this.hostLimits = new HostLimits();
+        this.retryingTransport = new RetryingTransport(new RateLimitedTransport(transport, hostLimits), null);
+        this.cachingTransport = new CachingTransport(responseCache, retryingTransport);
     }
     
-    public void executeGetRequest(String urlString) {
-        Request request = new Request("GET", urlString);
-        executeRequest(request);
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+    
+    // The transport bypassing the response cache; requests still follow the retry policy
+    // and host limits
+    public HttpTransport getTransport() {
+        return retryingTransport;
+    }
+    
+    public HostLimits getHostLimits() {
+        return hostLimits;
+    }
+    
+    public RetryPolicy getDefaultRetryPolicy() {
+        return defaultRetryPolicy;
+    }
+    
+    // Applies to requests without a policy of their own; null turns retries off
+    public void setDefaultRetryPolicy(RetryPolicy policy) {
+        this.defaultRetryPolicy = policy;
+        retryingTransport.setDefaultPolicy(policy);
+    }
+    
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+    
+    public RequestTiming getLastTiming() {
+        return lastTiming;
+    }
+    
+    public boolean selectTransport(String name) {
+        switch (name) {
+            case "h1":
+                transport = pooledTransport;
+                break;
+            case "h2":
+                if (http2Transport == null) {
+                    http2Transport = new Http2Transport();
+                }
+                transport = http2Transport;
+                break;
+            default:
+                return false;
+        }
+        retryingTransport.setDelegate(new RateLimitedTransport(transport, hostLimits));
+        return true;
+    }
+    
+    public void close() {
+        // Stops the hedging threads and closes the transport in use; the other one is closed below
+        retryingTransport.close();
+        pooledTransport.close();
+        if (http2Transport != null) {
+            http2Transport.close();
+        }
+    }
+    
+    public void downloadToFile(Request request, String path) {
+        downloadToFile(request, path, 1);
+    }
+    
+    public void downloadToFile(Request request, String path, int segments) {
+        request.setUrl(normalizeUrl(request.getUrl()));
+        // Each segment needs its own connection to the host
+        int maxPerHost = connectionPool.getMaxPerHost();
+        int maxIdle = connectionPool.getMaxIdlePerHost();
+        boolean pooled = transport == pooledTransport;
+        if (pooled && segments > maxPerHost) {
+            connectionPool.setMaxPerHost(segments);
+            connectionPool.setMaxIdlePerHost(segments);
+        }
+        try {
+            new FileDownloader(uiManager, retryingTransport).download(request, new File(path), segments);
+        } finally {
+            if (pooled) {
+                connectionPool.setMaxPerHost(maxPerHost);
+                connectionPool.setMaxIdlePerHost(maxIdle);
+            }
+        }
+    }
+    
+    public void executeGetRequest(String argument) {
+        executeRequestWithoutBody("GET", argument);
     }
 
-    public void executePostRequest(String urlString) {
-        Request request = new Request("POST", urlString);
-         
-        uiManager.printInputPrompt("Content-Type (default: application/json):");
-        String contentType = scanner.nextLine().trim();
-        if (contentType.isEmpty()) {
-            contentType = "application/json";
+    public void executePostRequest(String argument) {
+        executeRequestWithBody("POST", argument);
+    }
+    
+    public void executePutRequest(String argument) {
+        uiManager.printInfo("PUT request follows the same flow as POST");
+        executeRequestWithBody("PUT", argument);
+    }
+    
+    // post/put <url> [--body-file <path>] [--chunked] [--form name=value] [--file name=@path]
+    // [-d <body>] [--content-type <type>] [-H "Name: value"]; whatever is not given as an
+    // option is prompted for
+    private void executeRequestWithBody(String method, String argument) {
+        CommandOptions options = CommandOptions.parse(argument, "chunked");
+        String url = options.getPositional(0);
+        if (url == null) {
+            uiManager.printError("Usage: " + method.toLowerCase() + " <url> [--body-file <path>] [--chunked]");
+            uiManager.printError("       " + method.toLowerCase() + " <url> --form <name=value> --file <name=@path> ...");
+            return;
+        }
+        Request request = new Request(method, url);
+        request.setChunked(options.has("chunked"));
+        
+        String bodyFile = options.get("body-file");
+        String data = options.get("d", options.get("data"));
+        boolean multipart = options.has("form") || options.has("file");
+        if ((bodyFile != null ? 1 : 0) + (data != null ? 1 : 0) + (multipart ? 1 : 0) > 1) {
+            uiManager.printError("Use only one of --body-file, -d or --form/--file");
+            return;
+        }
+        if (!addHeaderOptions(request, options)) {
+            return;
+        }
+        if (bodyFile != null) {
+            File file = new File(bodyFile);
+            if (!file.isFile() || !file.canRead()) {
+                uiManager.printError("Cannot read body file: " + bodyFile);
+                return;
+            }
+            request.setBody(new FileRequestBody(file));
         }
-        request.addHeader("Content-Type", contentType);
-         
-        uiManager.printInputPrompt("Request body (enter 'json' for JSON editor, or type directly):");
-        String bodyInput = scanner.nextLine().trim();
         
-        if (bodyInput.equalsIgnoreCase("json")) {
-            SimpleJsonEditor editor = new SimpleJsonEditor(uiManager, scanner, jsonFormatter);
-            String jsonBody = editor.edit();
-            request.setBody(jsonBody);
-        } else if (!bodyInput.isEmpty()) {
-            request.setBody(bodyInput);
+        if (multipart) {
+            MultipartBody form = buildMultipartBody(options);
+            if (form == null) {
+                return;
+            }
+            request.setBody(form);
+            request.addHeader("Content-Type", form.getContentType());
+        } else if (options.has("content-type")) {
+            request.addHeader("Content-Type", options.get("content-type"));
+        } else if (!hasHeader(request, "Content-Type")) {
+            String defaultContentType = bodyFile != null ? "application/octet-stream" : "application/json";
+            String contentType = prompter.ask("Content-Type (default: " + defaultContentType + "):");
+            if (contentType.isEmpty()) {
+                contentType = defaultContentType;
+            }
+            request.addHeader("Content-Type", contentType);
+        }
+         
+        if (data != null) {
+            request.setBody(data);
+        } else if (bodyFile == null && !multipart) {
+            String bodyInput = prompter.ask("Request body (enter 'json' for JSON editor, or type directly):");
+            
+            if (bodyInput.equalsIgnoreCase("json")) {
+                SimpleJsonEditor editor = new SimpleJsonEditor(uiManager, prompter, jsonFormatter);
+                String jsonBody = editor.edit();
+                request.setBody(jsonBody);
+            } else if (!bodyInput.isEmpty()) {
+                request.setBody(bodyInput);
+            }
         }
         
-        boolean addingHeaders = true;
-        while (addingHeaders) {
-            uiManager.printInputPrompt("Add header? (y/n):");
-            String addHeader = scanner.nextLine().trim().toLowerCase();
-            if (addHeader.equals("y")) {
-                uiManager.printInputPrompt("Header name:");
-                String headerName = scanner.nextLine().trim();
-                uiManager.printInputPrompt("Header value:");
-                String headerValue = scanner.nextLine().trim();
+        // Headers given as options replace the header prompts
+        if (prompter.isInteractive() && !options.has("H") && !options.has("header")) {
+            while (prompter.confirm("Add header? (y/n):")) {
+                String headerName = prompter.ask("Header name:");
+                String headerValue = prompter.ask("Header value:");
                 request.addHeader(headerName, headerValue);
-            } else {
-                addingHeaders = false;
             }
         }
         
         executeRequest(request);
     }
     
-    public void executePutRequest(String urlString) {
-        Request request = new Request("PUT", urlString);
-         
-        uiManager.printInfo("PUT request follows the same flow as POST");
-        
-        uiManager.printInputPrompt("Content-Type (default: application/json):");
-        String contentType = scanner.nextLine().trim();
-        if (contentType.isEmpty()) {
-            contentType = "application/json";
+    private static boolean hasHeader(Request request, String name) {
+        for (String key : request.getHeaders().keySet()) {
+            if (key.equalsIgnoreCase(name)) {
+                return true;
+            }
         }
-        request.addHeader("Content-Type", contentType);
-        
-        
-        uiManager.printInputPrompt("Request body (enter 'json' for JSON editor, or type directly):");
-        String bodyInput = scanner.nextLine().trim();
-        
-        if (bodyInput.equalsIgnoreCase("json")) {
-            SimpleJsonEditor editor = new SimpleJsonEditor(uiManager, scanner, jsonFormatter);
-            String jsonBody = editor.edit();
-            request.setBody(jsonBody);
-        } else if (!bodyInput.isEmpty()) {
-            request.setBody(bodyInput);
+        return false;
+    }
+    
+    // --form name=value adds a field and --file name=@path a file; like curl, --form name=@path
+    // is a file too
+    private MultipartBody buildMultipartBody(CommandOptions options) {
+        MultipartBody form = new MultipartBody();
+        List<String> specs = new ArrayList<>(options.getAll("form"));
+        for (String spec : options.getAll("file")) {
+            int equals = spec != null ? spec.indexOf('=') : -1;
+            if (equals > 0 && !spec.startsWith("@", equals + 1)) {
+                spec = spec.substring(0, equals + 1) + "@" + spec.substring(equals + 1);
+            }
+            specs.add(spec);
         }
         
-        boolean addingHeaders = true;
-        while (addingHeaders) {
-            uiManager.printInputPrompt("Add header? (y/n):");
-            String addHeader = scanner.nextLine().trim().toLowerCase();
-            if (addHeader.equals("y")) {
-                uiManager.printInputPrompt("Header name:");
-                String headerName = scanner.nextLine().trim();
-                uiManager.printInputPrompt("Header value:");
-                String headerValue = scanner.nextLine().trim();
-                request.addHeader(headerName, headerValue);
+        for (String spec : specs) {
+            int equals = spec != null ? spec.indexOf('=') : -1;
+            if (equals <= 0) {
+                uiManager.printError("Form parts must look like name=value or name=@path: " + spec);
+                return null;
+            }
+            String name = spec.substring(0, equals);
+            String value = spec.substring(equals + 1);
+            if (value.startsWith("@")) {
+                File file = new File(value.substring(1));
+                if (!file.isFile() || !file.canRead()) {
+                    uiManager.printError("Cannot read file for part " + name + ": " + file.getPath());
+                    return null;
+                }
+                form.addFile(name, file);
             } else {
-                addingHeaders = false;
+                form.addField(name, value);
             }
         }
-        
-        executeRequest(request);
+        return form;
     }
     
-    public void executeDeleteRequest(String urlString) {
-        Request request = new Request("DELETE", urlString);
-        executeRequest(request);
+    public void executeDeleteRequest(String argument) {
+        executeRequestWithoutBody("DELETE", argument);
+    }
+    
+    // get/delete <url> [-H "Name: value"]...
+    private void executeRequestWithoutBody(String method, String argument) {
+        CommandOptions options = CommandOptions.parse(argument);
+        String url = options.getPositional(0);
+        if (url == null) {
+            uiManager.printError("Usage: " + method.toLowerCase() + " <url> [-H \"Name: value\"]");
+            return;
+        }
+        Request request = new Request(method, url);
+        if (addHeaderOptions(request, options)) {
+            executeRequest(request);
+        }
+    }
+    
+    // -H/--header "Name: value", repeatable
+    private boolean addHeaderOptions(Request request, CommandOptions options) {
+        List<String> headers = new ArrayList<>(options.getAll("H"));
+        headers.addAll(options.getAll("header"));
+        for (String header : headers) {
+            int colon = header != null ? header.indexOf(':') : -1;
+            if (colon <= 0) {
+                uiManager.printError("Headers must look like \"Name: value\": " + header);
+                return false;
+            }
+            request.addHeader(header.substring(0, colon).trim(), header.substring(colon + 1).trim());
+        }
+        return true;
     }
      
     public void executeRequest(Request request) {
-        HttpURLConnection connection = null;
+        HttpResponse response = null;
         try {
-            String urlString = request.getUrl();
-            if (!urlString.startsWith("http://") && !urlString.startsWith("https://")) {
-                urlString = "http://" + urlString;
-                request.setUrl(urlString);
-            }
+            String urlString = normalizeUrl(request.getUrl());
+            request.setUrl(urlString);
             
             uiManager.printRequestInfo(urlString, request.getMethod().toLowerCase());
             
-            URL url = new URL(urlString);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod(request.getMethod());
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-             
-            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
-                connection.setRequestProperty(header.getKey(), header.getValue());
+            response = cachingTransport.execute(request);
+            response = response.decodeContent();
+            
+            int status = response.getStatus();
+            uiManager.printStatusInfo(status, response.getMessage(), response.getProtocol());
+            if (status >= 400) {
+                uiManager.recordFailure();
             }
-             
-            if (request.getMethod().equals("POST") || request.getMethod().equals("PUT")) {
-                connection.setDoOutput(true);
-                if (request.getBody() != null && !request.getBody().isEmpty()) {
-                    try (OutputStream os = connection.getOutputStream()) {
-                        byte[] input = request.getBody().getBytes("utf-8");
-                        os.write(input, 0, input.length);
-                    }
-                }
+            if (response.getCacheStatus() != null) {
+                uiManager.printInfo("Served from cache: " + response.getCacheStatus());
+            }
+            if (response.getRetries() > 0) {
+                uiManager.printInfo("Retried " + response.getRetries() + (response.getRetries() == 1 ? " time" : " times"));
+            }
+            if (response.getHedge() != null) {
+                uiManager.printInfo("Hedged: " + response.getHedge());
             }
-            
-            int status = connection.getResponseCode();
-            uiManager.printStatusInfo(status, connection.getResponseMessage());
              
             uiManager.printRequestDetailsSection();
             uiManager.printRequestDetail("Method", request.getMethod());
@@ -158,7 +325,11 @@ public class HttpRequestHandler {
                 uiManager.printRequestDetail("Header", header.getKey() + ": " + header.getValue());
             }
              
-            if (request.getBody() != null && !request.getBody().isEmpty()) {
+            if (request.isStreamingBody()) {
+                uiManager.printRequestBodySection();
+                System.out.println(request.getRequestBody().describe()
+                        + (request.isChunked() ? " (chunked)" : ""));
+            } else if (request.getBody() != null && !request.getBody().isEmpty()) {
                 uiManager.printRequestBodySection();
                 if (request.getBody().trim().startsWith("{") || request.getBody().trim().startsWith("[")) {
                     try {
@@ -172,37 +343,18 @@ public class HttpRequestHandler {
             }
              
             uiManager.printHeadersSection();
-            connection.getHeaderFields().forEach((key, values) -> {
-                if (key != null) {
-                    uiManager.printHeader(key, String.join(", ", values));
-                }
-            });
+            response.getHeaders().forEach((key, values) -> 
+                    uiManager.printHeader(key, String.join(", ", values)));
              
-            BufferedReader reader;
-            if (status > 299) {
-                reader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-            } else {
-                reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            }
-            
             uiManager.printResponseBodySection();
-            String line;
-            StringBuilder responseContent = new StringBuilder();
-            while ((line = reader.readLine()) != null) {
-                responseContent.append(line);
-            }
-            reader.close();
+            responseRenderer.render(response);
+            uiManager.printBodySize(response.getBytesReceived(), response.getBytesDecoded(),
+                    response.isDecoded() ? response.getHeader("Content-Encoding") : null);
             
-            String response = responseContent.toString();
-            if (response.trim().startsWith("{") || response.trim().startsWith("[")) {
-                try {
-                    String formatted = jsonFormatter.formatJson(response);
-                    System.out.println(formatted);
-                } catch (Exception e) {
-                    System.out.println(response);
-                }
-            } else {
-                System.out.println(response);
+            // The download phase only ends with the body, so the waterfall follows it
+            lastTiming = response.getTiming();
+            if (lastTiming != null) {
+                uiManager.printTimingSection(lastTiming);
             }
             
             // Store the last executed request
@@ -214,24 +366,27 @@ public class HttpRequestHandler {
         } catch (IOException e) {
             uiManager.printError("Error: " + e.getMessage());
         } finally {
-            if (connection != null) {
-                connection.disconnect();
+            if (response != null) {
+                response.close();
             }
         }
     }
     
+    public static String normalizeUrl(String urlString) {
+        if (!urlString.startsWith("http://") && !urlString.startsWith("https://")) {
+            return "http://" + urlString;
+        }
+        return urlString;
+    }
+    
     private void offerToSaveRequest() {
-        if (lastExecutedRequest == null) {
+        if (lastExecutedRequest == null || !prompter.isInteractive()) {
             return;
         }
         
-        uiManager.printInputPrompt("Would you like to save this request? (y/n):");
-        String saveResponse = scanner.nextLine().trim().toLowerCase();
-        
-        if (saveResponse.equals("y") || saveResponse.equals("yes")) {
+        if (prompter.confirm("Would you like to save this request? (y/n):")) {
             // Get the request name
-            uiManager.printInputPrompt("Enter a name for this request:");
-            String requestName = scanner.nextLine().trim();
+            String requestName = prompter.ask("Enter a name for this request:");
             if (requestName.isEmpty()) {
                 uiManager.printError("Request name cannot be empty");
                 return;
@@ -254,10 +409,9 @@ public class HttpRequestHandler {
             System.out.printf("  %d. Create new group\n", counter);
             
             // Get user selection
-            uiManager.printInputPrompt("Enter your choice (1-" + counter + "):");
             int choice;
             try {
-                choice = Integer.parseInt(scanner.nextLine().trim());
+                choice = Integer.parseInt(prompter.ask("Enter your choice (1-" + counter + "):"));
                 if (choice < 1 || choice > counter) {
                     uiManager.printError("Invalid choice");
                     return;
@@ -280,15 +434,13 @@ public class HttpRequestHandler {
     }
     
     private void createGroupAndSaveRequest(String requestName) {
-        uiManager.printInputPrompt("Enter new group name:");
-        String groupName = scanner.nextLine().trim();
+        String groupName = prompter.ask("Enter new group name:");
         if (groupName.isEmpty()) {
             uiManager.printError("Group name cannot be empty");
             return;
         }
         
-        uiManager.printInputPrompt("Enter group description (optional):");
-        String description = scanner.nextLine().trim();
+        String description = prompter.ask("Enter group description (optional):");
         
         if (apiCollectionManager.createGroup(groupName, description)) {
             Integer groupId = apiCollectionManager.getGroupIdByName(groupName);
@@ -308,29 +460,19 @@ public class HttpRequestHandler {
             return;
         }
         
-        // Convert headers to JSON
-        StringBuilder headersJson = new StringBuilder("{");
-        boolean first = true;
-        for (Map.Entry<String, String> entry : lastExecutedRequest.getHeaders().entrySet()) {
-            if (!first) {
-                headersJson.append(", ");
-            }
-            headersJson.append("\"").append(entry.getKey()).append("\": \"")
-                      .append(entry.getValue()).append("\"");
-            first = false;
-        }
-        headersJson.append("}");
-        
-        uiManager.printInputPrompt("Description (optional):");
-        String description = scanner.nextLine().trim();
+        String description = prompter.ask("Description (optional):");
         
+        if (lastExecutedRequest.getRequestBody() instanceof MultipartBody) {
+            uiManager.printWarning("Form bodies are not stored; the request is saved without a body");
+        }
         if (apiCollectionManager.saveRequest(
                 groupId, 
                 requestName, 
                 lastExecutedRequest.getMethod(), 
                 lastExecutedRequest.getUrl(), 
-                headersJson.toString(), 
+                Request.headersToJson(lastExecutedRequest.getHeaders()), 
                 lastExecutedRequest.getBody(), 
+                bodyFilePath(lastExecutedRequest),
                 description)) {
             uiManager.printSuccess("API request saved: " + requestName);
         } else {
@@ -338,11 +480,20 @@ public class HttpRequestHandler {
         }
     }
     
+    // Saved requests reference body files by absolute path instead of embedding the content
+    private static String bodyFilePath(Request request) {
+        RequestBody body = request.getRequestBody();
+        return body instanceof FileRequestBody ? ((FileRequestBody) body).getFile().getAbsolutePath() : null;
+    }
+    
     public static class Request {
         private String method;
         private String url;
         private Map<String, String> headers;
         private String body;
+        private RequestBody bodySource;
+        private boolean chunked;
+        private RetryPolicy retryPolicy;
         
         public Request(String method, String url) {
             this.method = method;
@@ -351,6 +502,74 @@ public class HttpRequestHandler {
             this.body = null;
         }
         
+        // Builds a request from a row returned by ApiCollectionManager.getRequestById
+        public static Request fromSavedRequest(Map<String, Object> saved) {
+            String method = (String) saved.get("method");
+            Request request = new Request(method, (String) saved.get("url"));
+            
+            request.headers.putAll(parseHeadersJson((String) saved.get("headers")));
+            
+            String body = (String) saved.get("body");
+            String bodyFile = (String) saved.get("body_file");
+            if (method.equals("POST") || method.equals("PUT")) {
+                if (bodyFile != null && !bodyFile.isEmpty()) {
+                    request.setBody(new FileRequestBody(new File(bodyFile)));
+                } else if (body != null && !body.isEmpty()) {
+                    request.setBody(body);
+                }
+            }
+            
+            // Resolved by ApiCollectionManager: the request's own policy, else its group's
+            String retryPolicy = (String) saved.get("retry_policy");
+            if (retryPolicy != null) {
+                request.setRetryPolicy(RetryPolicy.parse(retryPolicy));
+            }
+            return request;
+        }
+        
+        // Serializes headers the way they are stored in the api_requests table
+        public static String headersToJson(Map<String, String> headers) {
+            StringBuilder headersJson = new StringBuilder("{");
+            boolean first = true;
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (!first) {
+                    headersJson.append(", ");
+                }
+                headersJson.append("\"").append(entry.getKey()).append("\": \"")
+                          .append(entry.getValue()).append("\"");
+                first = false;
+            }
+            headersJson.append("}");
+            return headersJson.toString();
+        }
+        
+        public static Map<String, String> parseHeadersJson(String headersJson) {
+            Map<String, String> headers = new HashMap<>();
+            if (headersJson != null && !headersJson.equals("{}")) {
+                headersJson = headersJson.replaceAll("[{}\"]", "");
+                String[] headerPairs = headersJson.split(",");
+                for (String pair : headerPairs) {
+                    String[] keyValue = pair.split(":");
+                    if (keyValue.length == 2) {
+                        String key = keyValue[0].trim();
+                        String value = keyValue[1].trim();
+                        headers.put(key, value);
+                    }
+                }
+            }
+            return headers;
+        }
+        
+        public Request copy() {
+            Request copy = new Request(method, url);
+            copy.headers.putAll(headers);
+            copy.body = body;
+            copy.bodySource = bodySource;
+            copy.chunked = chunked;
+            copy.retryPolicy = retryPolicy;
+            return copy;
+        }
+        
         public String getMethod() {
             return method;
         }
@@ -377,6 +596,42 @@ public class HttpRequestHandler {
         
         public void setBody(String body) {
             this.body = body;
+            this.bodySource = null;
+        }
+        
+        public void setBody(RequestBody bodySource) {
+            this.bodySource = bodySource;
+            this.body = null;
+        }
+        
+        // The body as the transports send it: a streamed source, or the text body as UTF-8
+        public RequestBody getRequestBody() {
+            if (bodySource != null) {
+                return bodySource;
+            }
+            return body != null ? RequestBody.ofBytes(body.getBytes(StandardCharsets.UTF_8)) : null;
+        }
+        
+        public boolean isStreamingBody() {
+            return bodySource != null;
+        }
+        
+        public boolean isChunked() {
+            return chunked;
+        }
+        
+        // Sends the body with Transfer-Encoding: chunked even when its length is known
+        public void setChunked(boolean chunked) {
+            this.chunked = chunked;
+        }
+        
+        // Overrides the session's default retry policy for this request
+        public RetryPolicy getRetryPolicy() {
+            return retryPolicy;
+        }
+        
+        public void setRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
         }
     }
 }
\ No newline at end of file
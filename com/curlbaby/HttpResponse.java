@@ -0,0 +1,210 @@
+package com.curlbaby;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HttpResponse implements Closeable {
+    private final int status;
+    private final String message;
+    private final String protocol;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final RequestTiming timing;
+    // Bytes as received, and after Content-Encoding was undone (null until decodeContent)
+    private final CountingInputStream received;
+    private final CountingInputStream decoded;
+    private String cacheStatus;
+    private int retries;
+    private String hedge;
+    
+    public HttpResponse(int status, String message, String protocol,
+                        Map<String, List<String>> headers, InputStream body) {
+        this(status, message, protocol, headers, body, null);
+    }
+    
+    public HttpResponse(int status, String message, String protocol,
+                        Map<String, List<String>> headers, InputStream body, RequestTiming timing) {
+        this.status = status;
+        this.message = message;
+        this.protocol = protocol;
+        this.headers = headers != null ? headers : new LinkedHashMap<>();
+        this.timing = timing;
+        this.received = new CountingInputStream(body);
+        this.decoded = null;
+        this.body = timing != null ? new TimedInputStream(received, timing) : received;
+    }
+    
+    private HttpResponse(HttpResponse encoded, InputStream decodedBody) {
+        this.status = encoded.status;
+        this.message = encoded.message;
+        this.protocol = encoded.protocol;
+        this.headers = encoded.headers;
+        this.timing = encoded.timing;
+        this.cacheStatus = encoded.cacheStatus;
+        this.retries = encoded.retries;
+        this.hedge = encoded.hedge;
+        this.received = encoded.received;
+        this.decoded = new CountingInputStream(decodedBody);
+        this.body = decoded;
+    }
+    
+    // Returns a response whose body has its Content-Encoding undone, or this one if it has none
+    public HttpResponse decodeContent() throws IOException {
+        String contentEncoding = getHeader("Content-Encoding");
+        if (decoded != null || ContentDecoder.isIdentity(contentEncoding)) {
+            return this;
+        }
+        return new HttpResponse(this, ContentDecoder.decode(contentEncoding, body));
+    }
+    
+    public boolean isDecoded() {
+        return decoded != null;
+    }
+    
+    public long getBytesReceived() {
+        return received.count;
+    }
+    
+    public long getBytesDecoded() {
+        return decoded != null ? decoded.count : received.count;
+    }
+    
+    public int getStatus() {
+        return status;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public String getProtocol() {
+        return protocol;
+    }
+    
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+    
+    public String getHeader(String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+    
+    public InputStream getBody() {
+        return body;
+    }
+    
+    public RequestTiming getTiming() {
+        return timing;
+    }
+    
+    // How the response cache answered, or null when it went to the network as usual
+    public String getCacheStatus() {
+        return cacheStatus;
+    }
+    
+    public void setCacheStatus(String cacheStatus) {
+        this.cacheStatus = cacheStatus;
+    }
+    
+    // How many times the request was sent again before this response
+    public int getRetries() {
+        return retries;
+    }
+    
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+    
+    // Which copy answered when a hedge request was sent, otherwise null
+    public String getHedge() {
+        return hedge;
+    }
+    
+    public void setHedge(String hedge) {
+        this.hedge = hedge;
+    }
+    
+    public boolean isHedgeWinner() {
+        return "hedge answered first".equals(hedge);
+    }
+    
+    @Override
+    public void close() {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // Nothing useful to do, the connection is discarded by the stream
+        }
+    }
+    
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+        
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+    
+    // Stops the download clock when the body has been read to the end
+    private static class TimedInputStream extends FilterInputStream {
+        private final RequestTiming timing;
+        
+        TimedInputStream(InputStream in, RequestTiming timing) {
+            super(in);
+            this.timing = timing;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                timing.markComplete();
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n == -1) {
+                timing.markComplete();
+            }
+            return n;
+        }
+    }
+}
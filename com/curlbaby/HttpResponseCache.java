@@ -0,0 +1,534 @@
+package com.curlbaby;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Client-side cache of GET responses. Entries are keyed by URL plus the request headers named in
+// the response's Vary header, live in a byte-bounded LRU in memory and, when enabled, are written
+// through to ~/.curlbaby/cache so they survive restarts.
+public class HttpResponseCache {
+    private static final int DISK_FORMAT = 1;
+
+    private final LinkedHashMap<String, CachedResponse> memory = new LinkedHashMap<>(64, 0.75f, true);
+    // Vary header names per URL, needed to build the full key before the entry is found
+    private final Map<String, List<String>> varyByUrl = new HashMap<>();
+    private final File diskDir;
+    private boolean enabled;
+    private boolean diskEnabled;
+    private long maxBytes = 64L * 1024 * 1024;
+    private long maxDiskBytes = 512L * 1024 * 1024;
+    private long usedBytes;
+    private long diskBytes;
+
+    private long hits;
+    private long revalidations;
+    private long misses;
+    private long stores;
+    private long evictions;
+    private long diskReads;
+    private long bytesSaved;
+
+    public HttpResponseCache() {
+        this.diskDir = new File(new File(System.getProperty("user.home"), ".curlbaby"), "cache");
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public synchronized boolean isDiskEnabled() {
+        return diskEnabled;
+    }
+
+    public synchronized void setDiskEnabled(boolean diskEnabled) {
+        if (diskEnabled && !this.diskEnabled) {
+            diskDir.mkdirs();
+            diskBytes = 0;
+            for (File file : listDiskFiles()) {
+                diskBytes += file.length();
+            }
+        }
+        this.diskEnabled = diskEnabled;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evictToFit();
+    }
+
+    public File getDiskDir() {
+        return diskDir;
+    }
+
+    // Primary key for a request; only GET responses are cached
+    static String urlKey(String method, String url) {
+        return method + " " + url;
+    }
+
+    public synchronized CachedResponse lookup(String method, String url, Map<String, String> requestHeaders) {
+        String urlKey = urlKey(method, url);
+        List<String> vary = varyByUrl.get(urlKey);
+        if (vary == null && diskEnabled) {
+            vary = readVary(urlKey);
+            if (vary != null) {
+                varyByUrl.put(urlKey, vary);
+            }
+        }
+        String key = fullKey(urlKey, vary, requestHeaders);
+
+        CachedResponse cached = memory.get(key);
+        if (cached == null && diskEnabled) {
+            cached = readFromDisk(urlKey, key);
+            if (cached != null) {
+                diskReads++;
+                putInMemory(key, cached);
+            }
+        }
+        return cached;
+    }
+
+    public synchronized void store(String method, String url, Map<String, String> requestHeaders,
+                                   CachedResponse response) {
+        String urlKey = urlKey(method, url);
+        List<String> vary = response.getVaryHeaders();
+        varyByUrl.put(urlKey, vary);
+        String key = fullKey(urlKey, vary, requestHeaders);
+        putInMemory(key, response);
+        stores++;
+        if (diskEnabled) {
+            writeToDisk(urlKey, key, vary, response);
+        }
+    }
+
+    // Unsafe methods change the resource, so every stored variant of the URL is dropped
+    public synchronized void invalidate(String url) {
+        String urlKey = urlKey("GET", url);
+        varyByUrl.remove(urlKey);
+        String prefix = urlKey + "\n";
+        Iterator<Map.Entry<String, CachedResponse>> it = memory.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, CachedResponse> entry = it.next();
+            if (entry.getKey().equals(urlKey) || entry.getKey().startsWith(prefix)) {
+                usedBytes -= entry.getValue().size();
+                it.remove();
+            }
+        }
+        if (diskEnabled) {
+            String hash = hash(urlKey);
+            for (File file : listDiskFiles()) {
+                if (file.getName().startsWith(hash)) {
+                    diskBytes -= file.length();
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        varyByUrl.clear();
+        usedBytes = 0;
+        for (File file : listDiskFiles()) {
+            file.delete();
+        }
+        diskBytes = 0;
+    }
+
+    public synchronized void recordHit(CachedResponse response) {
+        hits++;
+        bytesSaved += response.getBody().length;
+    }
+
+    public synchronized void recordRevalidation(CachedResponse response) {
+        revalidations++;
+        bytesSaved += response.getBody().length;
+    }
+
+    public synchronized void recordMiss() {
+        misses++;
+    }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        revalidations = 0;
+        misses = 0;
+        stores = 0;
+        evictions = 0;
+        diskReads = 0;
+        bytesSaved = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getRevalidations() {
+        return revalidations;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getStores() {
+        return stores;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getDiskReads() {
+        return diskReads;
+    }
+
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    public synchronized int getEntryCount() {
+        return memory.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    // Largest body worth buffering for the cache; bigger responses are streamed through uncached
+    public synchronized long getMaxEntryBytes() {
+        return maxBytes / 4;
+    }
+
+    private void putInMemory(String key, CachedResponse response) {
+        CachedResponse previous = memory.put(key, response);
+        if (previous != null) {
+            usedBytes -= previous.size();
+        }
+        usedBytes += response.size();
+        evictToFit();
+    }
+
+    private void evictToFit() {
+        Iterator<Map.Entry<String, CachedResponse>> it = memory.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            usedBytes -= it.next().getValue().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static String fullKey(String urlKey, List<String> vary, Map<String, String> requestHeaders) {
+        if (vary == null || vary.isEmpty()) {
+            return urlKey;
+        }
+        StringBuilder key = new StringBuilder(urlKey);
+        for (String name : vary) {
+            String value = null;
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    value = header.getValue();
+                    break;
+                }
+            }
+            key.append('\n').append(name).append(':').append(value != null ? value : "");
+        }
+        return key.toString();
+    }
+
+    // Disk layout: <hash(url)>-<hash(full key)>.entry per variant and <hash(url)>.vary for the Vary names
+
+    private File entryFile(String urlKey, String key) {
+        return new File(diskDir, hash(urlKey) + "-" + hash(key).substring(0, 16) + ".entry");
+    }
+
+    private File varyFile(String urlKey) {
+        return new File(diskDir, hash(urlKey) + ".vary");
+    }
+
+    private List<String> readVary(String urlKey) {
+        File file = varyFile(urlKey);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            String names = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return names.isEmpty() ? new ArrayList<>() : Arrays.asList(names.split(","));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private CachedResponse readFromDisk(String urlKey, String key) {
+        File file = entryFile(urlKey, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != DISK_FORMAT || !in.readUTF().equals(key)) {
+                return null;
+            }
+            int status = in.readInt();
+            String message = in.readUTF();
+            String protocol = in.readUTF();
+            long storedAt = in.readLong();
+            int headerCount = in.readInt();
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, values);
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+
+            return new CachedResponse(status, message, protocol, headers, body, storedAt);
+        } catch (IOException e) {
+            // Truncated or from an older version; treat as a miss and let the next store replace it
+            return null;
+        }
+    }
+
+    private void writeToDisk(String urlKey, String key, List<String> vary, CachedResponse response) {
+        File file = entryFile(urlKey, key);
+        File temp = new File(diskDir, file.getName() + ".tmp");
+        try {
+            diskDir.mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(DISK_FORMAT);
+                out.writeUTF(key);
+                out.writeInt(response.getStatus());
+                out.writeUTF(response.getMessage());
+                out.writeUTF(response.getProtocol());
+                out.writeLong(response.getStoredAt());
+                out.writeInt(response.getHeaders().size());
+                for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+                    out.writeUTF(header.getKey());
+                    out.writeInt(header.getValue().size());
+                    for (String value : header.getValue()) {
+                        out.writeUTF(value);
+                    }
+                }
+                out.writeInt(response.getBody().length);
+                out.write(response.getBody());
+            }
+            long previous = file.length();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            diskBytes += file.length() - previous;
+
+            Files.write(varyFile(urlKey).toPath(), String.join(",", vary).getBytes(StandardCharsets.UTF_8));
+            trimDisk();
+        } catch (IOException e) {
+            // The disk tier is best effort; the entry is still cached in memory
+            temp.delete();
+        }
+    }
+
+    // Drops the least recently written entries once the disk tier outgrows its budget
+    private void trimDisk() {
+        if (diskBytes <= maxDiskBytes) {
+            return;
+        }
+        File[] files = listDiskFiles();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (diskBytes <= maxDiskBytes) {
+                break;
+            }
+            if (file.getName().endsWith(".entry")) {
+                diskBytes -= file.length();
+                file.delete();
+            }
+        }
+    }
+
+    private File[] listDiskFiles() {
+        File[] files = diskDir.listFiles((dir, name) -> name.endsWith(".entry") || name.endsWith(".vary"));
+        return files != null ? files : new File[0];
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class CachedResponse {
+        private final int status;
+        private final String message;
+        private final String protocol;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private final long storedAt;
+
+        public CachedResponse(int status, String message, String protocol,
+                              Map<String, List<String>> headers, byte[] body, long storedAt) {
+            this.status = status;
+            this.message = message != null ? message : "";
+            this.protocol = protocol != null ? protocol : "";
+            this.headers = headers;
+            this.body = body;
+            this.storedAt = storedAt;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        public String getHeader(String name) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        public List<String> getVaryHeaders() {
+            List<String> names = new ArrayList<>();
+            String vary = getHeader("Vary");
+            if (vary != null) {
+                for (String name : vary.split(",")) {
+                    if (!name.trim().isEmpty()) {
+                        names.add(name.trim().toLowerCase());
+                    }
+                }
+            }
+            return names;
+        }
+
+        // Seconds since the origin generated the response, including any Age reported by caches on the way
+        public long getAgeSeconds(long now) {
+            long age = Math.max(0, (now - storedAt) / 1000);
+            String ageHeader = getHeader("Age");
+            if (ageHeader != null) {
+                try {
+                    age += Long.parseLong(ageHeader.trim());
+                } catch (NumberFormatException e) {
+                    // Ignore a malformed Age header
+                }
+            }
+            return age;
+        }
+
+        public boolean isFresh(long now) {
+            if (CacheControl.has(getHeader("Cache-Control"), "no-cache")) {
+                return false;
+            }
+            long maxAge = CacheControl.maxAge(getHeader("Cache-Control"));
+            return maxAge > 0 && getAgeSeconds(now) < maxAge;
+        }
+
+        public boolean hasValidators() {
+            return getHeader("ETag") != null || getHeader("Last-Modified") != null;
+        }
+
+        long size() {
+            long size = body.length + 256;
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                size += header.getKey().length();
+                for (String value : header.getValue()) {
+                    size += value.length();
+                }
+            }
+            return size;
+        }
+    }
+
+    // Just enough Cache-Control parsing for a private client cache
+    static class CacheControl {
+        static boolean has(String cacheControl, String directive) {
+            if (cacheControl == null) {
+                return false;
+            }
+            for (String part : cacheControl.split(",")) {
+                String name = part.trim().toLowerCase();
+                int equals = name.indexOf('=');
+                if ((equals >= 0 ? name.substring(0, equals).trim() : name).equals(directive)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // max-age in seconds, or -1 when absent or malformed
+        static long maxAge(String cacheControl) {
+            if (cacheControl == null) {
+                return -1;
+            }
+            for (String part : cacheControl.split(",")) {
+                String directive = part.trim().toLowerCase();
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        return Long.parseLong(directive.substring(8).replace("\"", "").trim());
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
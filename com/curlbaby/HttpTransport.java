@@ -0,0 +1,13 @@
+package com.curlbaby;
+
+import java.io.IOException;
+import com.curlbaby.HttpRequestHandler.Request;
+
+public interface HttpTransport {
+    
+    HttpResponse execute(Request request) throws IOException;
+    
+    String getName();
+    
+    void close();
+}
@@ -1,31 +1,190 @@
 package com.curlbaby;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Pretty-prints JSON in a single pass with constant memory: only the nesting depth and the
+// string/escape state are remembered, so inputs of any size can be formatted as a stream.
 public class JsonFormatter {
-    
+    private static final int INDENT_WIDTH = 2;
+    private static final int CACHED_LEVELS = 64;
+    // A newline followed by enough spaces for CACHED_LEVELS of nesting; slices of it are written as indents
+    private static final char[] NEWLINE_AND_INDENT = newlineAndIndent();
+
+    private static char[] newlineAndIndent() {
+        char[] chars = new char[1 + CACHED_LEVELS * INDENT_WIDTH];
+        Arrays.fill(chars, ' ');
+        chars[0] = '\n';
+        return chars;
+    }
+
     public String formatJson(String json) {
-        int indentLevel = 0;
-        StringBuilder result = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (char c : json.toCharArray()) {
-            if (c == '"' && (result.length() == 0 || result.charAt(result.length() - 1) != '\\')) {
-                inQuotes = !inQuotes;
-                result.append(c);
-            } else if (!inQuotes && (c == '{' || c == '[')) {
-                indentLevel++;
-                result.append(c).append("\n").append("  ".repeat(indentLevel));
-            } else if (!inQuotes && (c == '}' || c == ']')) {
-                indentLevel--;
-                result.append("\n").append("  ".repeat(indentLevel)).append(c);
-            } else if (!inQuotes && c == ',') {
-                result.append(c).append("\n").append("  ".repeat(indentLevel));
-            } else if (!inQuotes && c == ':') {
-                result.append(c).append(" ");
-            } else {
-                result.append(c);
-            }
+        StringWriter result = new StringWriter(json.length() + json.length() / 4);
+        try {
+            format(new StringReader(json), result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        
         return result.toString();
     }
-}
\ No newline at end of file
+
+    // Formats incrementally, so the output can be shown while the input is still arriving
+    public void format(Reader in, Writer out) throws IOException {
+        Tokenizer tokenizer = new Tokenizer(out);
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            tokenizer.process(buffer, 0, n);
+            // Hand over everything formatted so far before possibly blocking on the next read
+            tokenizer.flush();
+        }
+        tokenizer.flush();
+    }
+
+    // Formats UTF-8 encoded JSON straight from a byte buffer, e.g. a mapped file or a network read
+    public void format(ByteBuffer in, Writer out) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(8192);
+        Tokenizer tokenizer = new Tokenizer(out);
+
+        boolean endOfInput = false;
+        while (true) {
+            CoderResult result = endOfInput ? decoder.flush(chars) : decoder.decode(in, chars, true);
+            chars.flip();
+            tokenizer.process(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+            chars.clear();
+            if (result.isUnderflow()) {
+                if (endOfInput) {
+                    break;
+                }
+                endOfInput = true;
+            }
+        }
+        tokenizer.flush();
+    }
+
+    private static class Tokenizer {
+        private final Writer out;
+        private final char[] output = new char[16384];
+        private int outputLength;
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+        // Set after { or [ so that empty containers come out as {} and [] instead of spanning lines
+        private boolean pendingOpen;
+
+        Tokenizer(Writer out) {
+            this.out = out;
+        }
+
+        void process(char[] chars, int offset, int length) throws IOException {
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                char c = chars[i];
+
+                if (inString) {
+                    append(c);
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    continue;
+                }
+
+                if (pendingOpen) {
+                    pendingOpen = false;
+                    if (c == '}' || c == ']') {
+                        depth--;
+                        append(c);
+                        continue;
+                    }
+                    newline();
+                }
+
+                switch (c) {
+                    case '{':
+                    case '[':
+                        append(c);
+                        depth++;
+                        pendingOpen = true;
+                        break;
+                    case '}':
+                    case ']':
+                        depth = Math.max(0, depth - 1);
+                        newline();
+                        append(c);
+                        break;
+                    case ',':
+                        append(c);
+                        newline();
+                        break;
+                    case ':':
+                        append(c);
+                        append(' ');
+                        break;
+                    case '"':
+                        inString = true;
+                        append(c);
+                        break;
+                    default:
+                        append(c);
+                }
+            }
+        }
+
+        private void append(char c) throws IOException {
+            if (outputLength == output.length) {
+                drain();
+            }
+            output[outputLength++] = c;
+        }
+
+        private void newline() throws IOException {
+            int spaces = depth * INDENT_WIDTH;
+            int chunk = Math.min(spaces, CACHED_LEVELS * INDENT_WIDTH);
+            write(NEWLINE_AND_INDENT, 0, 1 + chunk);
+            // Deeper than the cached indent: keep writing cached runs of spaces
+            for (spaces -= chunk; spaces > 0; spaces -= chunk) {
+                chunk = Math.min(spaces, CACHED_LEVELS * INDENT_WIDTH);
+                write(NEWLINE_AND_INDENT, 1, chunk);
+            }
+        }
+
+        private void write(char[] chars, int offset, int length) throws IOException {
+            if (outputLength + length > output.length) {
+                drain();
+            }
+            System.arraycopy(chars, offset, output, outputLength, length);
+            outputLength += length;
+        }
+
+        private void drain() throws IOException {
+            out.write(output, 0, outputLength);
+            outputLength = 0;
+        }
+
+        void flush() throws IOException {
+            drain();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.curlbaby;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of nanosecond values in the style of HdrHistogram: exact below
+// 1024 ns, then 512 linear sub-buckets per power of two, i.e. about 0.2% relative error.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 9;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF << 1;
+    private static final int MAX_EXPONENT = 45; // ~9.7 hours
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int shift = exponent - SUB_BUCKET_BITS;
+        long subBucket = Math.min(value >>> shift, LINEAR_LIMIT - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_HALF
+                + (int) (subBucket - SUB_BUCKET_HALF);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int exponent = SUB_BUCKET_BITS + 1 + offset / SUB_BUCKET_HALF;
+        long subBucket = SUB_BUCKET_HALF + offset % SUB_BUCKET_HALF;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMin() {
+        return totalCount.get() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+}
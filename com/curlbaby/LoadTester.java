@@ -0,0 +1,284 @@
+package com.curlbaby;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import com.curlbaby.HttpRequestHandler.Request;
+
+public class LoadTester {
+    private final UIManager uiManager;
+    private final HttpTransport transport;
+
+    public LoadTester(UIManager uiManager, HttpTransport transport) {
+        this.uiManager = uiManager;
+        this.transport = transport;
+    }
+
+    // Closed loop: each worker sends its next request as soon as the previous one finished
+    public Result runClosedLoop(Request request, int totalRequests, int concurrency) throws InterruptedException {
+        Result result = new Result(totalRequests);
+        AtomicLong issued = new AtomicLong();
+        ExecutorService executor = WorkerThreads.newExecutor("bench");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                byte[] buffer = new byte[16384];
+                while (issued.getAndIncrement() < totalRequests) {
+                    long sentAt = System.nanoTime();
+                    send(request, buffer, result);
+                    result.latency.record(System.nanoTime() - sentAt);
+                }
+            });
+        }
+        executor.shutdown();
+        awaitWithProgress(executor, result);
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Open loop: requests follow a fixed timetable whether or not earlier ones have finished.
+    // Latency is measured from each request's intended start, so time spent queued behind a
+    // slow server is counted instead of silently omitted.
+    public Result runOpenLoop(Request request, double ratePerSecond, long durationMillis, int maxInFlight)
+            throws InterruptedException {
+        long totalRequests = Math.max(1, (long) (ratePerSecond * durationMillis / 1000.0));
+        double intervalNanos = 1e9 / ratePerSecond;
+        Result result = new Result(totalRequests);
+        result.targetRate = ratePerSecond;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ExecutorService executor = WorkerThreads.newExecutor("bench");
+        ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[16384]);
+
+        long start = System.nanoTime();
+        long nextProgress = start;
+        try {
+            for (long i = 0; i < totalRequests; i++) {
+                long intended = start + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        long sentAt = System.nanoTime();
+                        send(request, buffers.get(), result);
+                        long finished = System.nanoTime();
+                        result.latency.record(finished - intended);
+                        result.serviceTime.record(finished - sentAt);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+
+                if (System.nanoTime() >= nextProgress) {
+                    System.out.print("\r  " + result.completed.sum() + "/" + totalRequests + " requests");
+                    System.out.flush();
+                    nextProgress += 500_000_000L;
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            System.out.print("\r\033[2K");
+            throw e;
+        }
+        executor.shutdown();
+        awaitWithProgress(executor, result);
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void send(Request request, byte[] buffer, Result result) {
+        try {
+            HttpResponse response = transport.execute(request);
+            try {
+                // Drain and discard: the body only counts towards the transfer total
+                InputStream body = response.getBody();
+                long received = 0;
+                int n;
+                while ((n = body.read(buffer)) != -1) {
+                    received += n;
+                }
+                result.bytesReceived.add(received);
+            } finally {
+                response.close();
+            }
+            result.addTiming(response.getTiming());
+            result.countOutcome(String.valueOf(response.getStatus()));
+            result.retries.add(response.getRetries());
+            if (response.getHedge() != null) {
+                result.hedges.increment();
+                if (response.isHedgeWinner()) {
+                    result.hedgeWins.increment();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            result.countOutcome(e.getClass().getSimpleName());
+        } finally {
+            result.completed.increment();
+        }
+    }
+
+    private void awaitWithProgress(ExecutorService executor, Result result) throws InterruptedException {
+        try {
+            while (!executor.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+                System.out.print("\r  " + result.completed.sum() + "/" + result.expected + " requests");
+                System.out.flush();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        } finally {
+            System.out.print("\r\033[2K");
+        }
+    }
+
+    public void printResult(Result result) {
+        long completed = result.completed.sum();
+        double seconds = result.elapsedNanos / 1e9;
+        LatencyHistogram latency = result.latency;
+
+        uiManager.printInfo("Benchmark Results:");
+        System.out.printf("  Requests:    %d completed in %.2f s%n", completed, seconds);
+        if (result.targetRate > 0) {
+            System.out.printf("  Throughput:  %.1f req/s (target %.1f req/s), %s/s received%n",
+                    completed / seconds, result.targetRate,
+                    uiManager.formatBytes((long) (result.bytesReceived.sum() / seconds)));
+        } else {
+            System.out.printf("  Throughput:  %.1f req/s, %s/s received%n",
+                    completed / seconds, uiManager.formatBytes((long) (result.bytesReceived.sum() / seconds)));
+        }
+
+        StringBuilder outcomes = new StringBuilder();
+        for (Map.Entry<String, Long> entry : new TreeMap<>(result.getOutcomes()).entrySet()) {
+            if (outcomes.length() > 0) {
+                outcomes.append(", ");
+            }
+            outcomes.append(entry.getKey()).append(" x").append(entry.getValue());
+        }
+        System.out.println("  Responses:   " + outcomes);
+        long retries = result.retries.sum();
+        long hedges = result.hedges.sum();
+        if (retries > 0 || hedges > 0) {
+            System.out.printf("  Retries:     %d (%.1f%% of requests)  Hedges: %d sent, %d answered first%n",
+                    retries, 100.0 * retries / Math.max(1, completed), hedges, result.hedgeWins.sum());
+        }
+
+        printPercentiles("Latency:    ", latency);
+        if (result.targetRate > 0) {
+            uiManager.printInfo("Latency is measured from each request's scheduled start time");
+            printPercentiles("Service:    ", result.serviceTime);
+            uiManager.printInfo("Service time excludes queueing; a large gap between the two means the target rate saturated the server");
+        }
+
+        if (result.timedResponses.sum() > 0) {
+            StringBuilder phases = new StringBuilder();
+            long timed = result.timedResponses.sum();
+            for (Map.Entry<String, LongAdder> phase : result.phaseTotals.entrySet()) {
+                if (phases.length() > 0) {
+                    phases.append("  ");
+                }
+                phases.append(phase.getKey()).append(' ')
+                        .append(uiManager.formatDuration(phase.getValue().sum() / timed));
+            }
+            System.out.println("  Phases:      " + phases + "  (mean)");
+        }
+
+        long failures = result.getFailureCount();
+        if (failures > 0) {
+            uiManager.printWarning(failures + " of " + completed + " requests failed");
+        }
+    }
+
+    private void printPercentiles(String label, LatencyHistogram histogram) {
+        System.out.printf("  %s p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n", label,
+                uiManager.formatDuration(histogram.getValueAtPercentile(50)),
+                uiManager.formatDuration(histogram.getValueAtPercentile(90)),
+                uiManager.formatDuration(histogram.getValueAtPercentile(99)),
+                uiManager.formatDuration(histogram.getValueAtPercentile(99.9)),
+                uiManager.formatDuration(histogram.getMax()));
+        System.out.printf("               min %s  mean %s%n",
+                uiManager.formatDuration(histogram.getMin()),
+                uiManager.formatDuration((long) histogram.getMean()));
+    }
+
+    public static class Result {
+        private final long expected;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final Map<String, LongAdder> phaseTotals = new LinkedHashMap<>();
+        private final LongAdder timedResponses = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private long elapsedNanos;
+        private double targetRate;
+
+        Result(long expected) {
+            this.expected = expected;
+        }
+
+        // Phases a transport could not observe (-1) are left out of the averages
+        void addTiming(RequestTiming timing) {
+            if (timing == null || !timing.isComplete()) {
+                return;
+            }
+            Map<String, Long> phases = timing.getPhases();
+            synchronized (phaseTotals) {
+                for (Map.Entry<String, Long> phase : phases.entrySet()) {
+                    if (phase.getValue() >= 0) {
+                        phaseTotals.computeIfAbsent(phase.getKey(), k -> new LongAdder()).add(phase.getValue());
+                    }
+                }
+            }
+            timedResponses.increment();
+        }
+
+        void countOutcome(String outcome) {
+            outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public Map<String, Long> getOutcomes() {
+            Map<String, Long> snapshot = new TreeMap<>();
+            outcomes.forEach((key, count) -> snapshot.put(key, count.sum()));
+            return snapshot;
+        }
+
+        // Anything that is not a 1xx-3xx status code counts as a failure
+        public long getFailureCount() {
+            long failures = 0;
+            for (Map.Entry<String, Long> entry : getOutcomes().entrySet()) {
+                char first = entry.getKey().charAt(0);
+                if (!(first >= '1' && first <= '3' && entry.getKey().length() == 3)) {
+                    failures += entry.getValue();
+                }
+            }
+            return failures;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.curlbaby;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A multipart/form-data body built from fields and files. Part headers are small and encoded
+// up front so the total length is known before sending; file contents are only read while
+// the body is written, one part at a time.
+public class MultipartBody implements RequestBody {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final String boundary;
+    private final List<Part> parts = new ArrayList<>();
+
+    public MultipartBody() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.boundary = "curlbaby-" + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+    }
+
+    public MultipartBody addField(String name, String value) {
+        parts.add(new Part(name, null, partHeader(name, null, null), value.getBytes(StandardCharsets.UTF_8), null));
+        return this;
+    }
+
+    public MultipartBody addFile(String name, File file) {
+        String contentType = URLConnection.guessContentTypeFromName(file.getName());
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+        parts.add(new Part(name, file.getName(), partHeader(name, file.getName(), contentType), null, file));
+        return this;
+    }
+
+    public String getContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    public int getPartCount() {
+        return parts.size();
+    }
+
+    @Override
+    public long contentLength() {
+        long length = closingDelimiter().length;
+        for (Part part : parts) {
+            length += part.header.length + part.contentLength() + 2;
+        }
+        return length;
+    }
+
+    @Override
+    public InputStream open() {
+        // Files are opened only when the stream reaches their part, so at most one is open at a time
+        List<StreamSource> sources = new ArrayList<>();
+        for (Part part : parts) {
+            sources.add(() -> new ByteArrayInputStream(part.header));
+            sources.add(part::openContent);
+            sources.add(() -> new ByteArrayInputStream(CRLF));
+        }
+        sources.add(() -> new ByteArrayInputStream(closingDelimiter()));
+
+        Iterator<StreamSource> iterator = sources.iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return iterator.next().open();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        for (Part part : parts) {
+            out.write(part.header);
+            if (part.value != null) {
+                out.write(part.value);
+            } else {
+                try (InputStream in = new FileInputStream(part.file)) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, n);
+                    }
+                }
+            }
+            out.write(CRLF);
+        }
+        out.write(closingDelimiter());
+    }
+
+    @Override
+    public String describe() {
+        StringBuilder description = new StringBuilder("<multipart/form-data, ")
+                .append(parts.size()).append(parts.size() == 1 ? " part, " : " parts, ")
+                .append(contentLength()).append(" bytes>");
+        for (Part part : parts) {
+            description.append("\n  ").append(part.describe());
+        }
+        return description.toString();
+    }
+
+    private byte[] partHeader(String name, String filename, String contentType) {
+        StringBuilder header = new StringBuilder();
+        header.append("--").append(boundary).append("\r\n");
+        header.append("Content-Disposition: form-data; name=\"").append(escape(name)).append('"');
+        if (filename != null) {
+            header.append("; filename=\"").append(escape(filename)).append('"');
+        }
+        header.append("\r\n");
+        if (contentType != null) {
+            header.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        header.append("\r\n");
+        return header.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] closingDelimiter() {
+        return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // Quotes and line breaks would end the header value early, so they are percent-encoded
+    // the way browsers do it
+    private static String escape(String value) {
+        return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+    }
+
+    private interface StreamSource {
+        InputStream open() throws IOException;
+    }
+
+    private static class Part {
+        private final String name;
+        private final String filename;
+        private final byte[] header;
+        private final byte[] value;
+        private final File file;
+
+        Part(String name, String filename, byte[] header, byte[] value, File file) {
+            this.name = name;
+            this.filename = filename;
+            this.header = header;
+            this.value = value;
+            this.file = file;
+        }
+
+        long contentLength() {
+            return value != null ? value.length : file.length();
+        }
+
+        InputStream openContent() throws IOException {
+            return value != null ? new ByteArrayInputStream(value) : new FileInputStream(file);
+        }
+
+        String describe() {
+            if (file != null) {
+                return name + "=@" + filename + " (" + file.length() + " bytes)";
+            }
+            return name + "=" + new String(value, StandardCharsets.UTF_8);
+        }
+    }
+}
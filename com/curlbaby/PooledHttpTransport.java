@@ -0,0 +1,640 @@
+package com.curlbaby;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import com.curlbaby.ConnectionPool.PooledConnection;
+import com.curlbaby.HttpRequestHandler.Request;
+
+public class PooledHttpTransport implements HttpTransport {
+    private static final int MAX_REDIRECTS = 5;
+
+    private final ConnectionPool pool;
+    private int connectTimeout = 5000;
+    private int readTimeout = 5000;
+
+    public PooledHttpTransport(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return "h1";
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public HttpResponse execute(Request request) throws IOException {
+        URL url = new URL(request.getUrl());
+        String method = request.getMethod();
+        RequestBody body = request.getRequestBody();
+        boolean chunked = body != null && (request.isChunked() || body.contentLength() < 0);
+        Map<String, String> headers = request.getHeaders();
+        RequestTiming timing = new RequestTiming();
+
+        for (int redirects = 0; ; redirects++) {
+            HttpResponse response = send(url, method, headers, body, chunked, timing);
+
+            String location = response.getHeader("Location");
+            if (!isRedirect(response.getStatus()) || location == null || redirects >= MAX_REDIRECTS) {
+                return response;
+            }
+
+            // Same rules as HttpURLConnection: never switch protocols on a redirect
+            URL target = new URL(url, location);
+            if (!target.getProtocol().equals(url.getProtocol())) {
+                return response;
+            }
+            response.getBody().transferTo(OutputStream.nullOutputStream());
+            response.close();
+            timing.markRedirect();
+
+            // Credentials and the Host header belong to the server they were written for
+            if (!target.getHost().equalsIgnoreCase(url.getHost()) || port(target) != port(url)) {
+                headers = without(headers, "Host", "Authorization", "Cookie");
+            }
+            int status = response.getStatus();
+            if (status == 303 || ((status == 301 || status == 302) && method.equals("POST"))) {
+                method = "GET";
+                body = null;
+                chunked = false;
+                headers = without(headers, "Content-Type");
+            }
+            url = target;
+        }
+    }
+
+    private static int port(URL url) {
+        return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    }
+
+    private static Map<String, String> without(Map<String, String> headers, String... names) {
+        Map<String, String> kept = new LinkedHashMap<>(headers);
+        for (String name : names) {
+            kept.keySet().removeIf(key -> key.equalsIgnoreCase(name));
+        }
+        return kept;
+    }
+
+    private boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private HttpResponse send(URL url, String method, Map<String, String> headers, RequestBody body,
+                              boolean chunked, RequestTiming timing) throws IOException {
+        boolean secure = url.getProtocol().equals("https");
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        String hostKey = url.getProtocol() + "://" + url.getHost() + ":" + port;
+        Proxy proxy = selectProxy(url);
+        if (proxy.type() != Proxy.Type.DIRECT) {
+            // Connections through a proxy are not interchangeable with direct ones
+            hostKey += " via " + proxy.address();
+        }
+
+        // A plain HTTP proxy forwards requests itself and needs the full URL in the request line
+        boolean absoluteForm = proxy.type() == Proxy.Type.HTTP && !secure;
+        byte[] head = buildRequestHead(url, port, method, headers, body, chunked, absoluteForm);
+
+        while (true) {
+            PooledConnection connection = pool.lease(hostKey, connectTimeout);
+            boolean reused = connection != null;
+            if (!reused) {
+                try {
+                    connection = openConnection(hostKey, url.getHost(), port, secure, proxy, timing);
+                } catch (IOException e) {
+                    pool.discard(hostKey);
+                    throw e;
+                }
+            }
+            timing.setReusedConnection(reused);
+            long connectionReadyAt = System.nanoTime();
+
+            try {
+                OutputStream out = connection.getOutputStream();
+                out.write(head);
+                if (chunked) {
+                    ChunkedOutputStream chunks = new ChunkedOutputStream(out);
+                    body.writeTo(chunks);
+                    chunks.finish();
+                } else if (body != null) {
+                    // Streamed from its source, so large bodies never sit on the heap
+                    body.writeTo(out);
+                }
+                out.flush();
+                return readResponse(connection, method, timing, connectionReadyAt);
+            } catch (IOException e) {
+                pool.release(connection, false);
+                // A kept-alive connection may have been closed by the server between the stale
+                // check and our write, which is worth a fresh attempt. The server may still have
+                // acted on what it received, so only a method that is safe to repeat is resent.
+                if (reused && !(e instanceof java.net.SocketTimeoutException) && RetryPolicy.isIdempotent(method)) {
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+
+    // The proxy the JVM would use for the URL: http(s).proxyHost, socksProxyHost or a custom
+    // ProxySelector, the same settings HttpURLConnection honors
+    private static Proxy selectProxy(URL url) {
+        ProxySelector selector = ProxySelector.getDefault();
+        if (selector == null) {
+            return Proxy.NO_PROXY;
+        }
+        try {
+            List<Proxy> proxies = selector.select(url.toURI());
+            return proxies == null || proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return Proxy.NO_PROXY;
+        }
+    }
+
+    private PooledConnection openConnection(String hostKey, String host, int port, boolean secure,
+                                            Proxy proxy, RequestTiming timing) throws IOException {
+        long phaseStart = System.nanoTime();
+        InetSocketAddress target;
+        if (proxy.type() == Proxy.Type.DIRECT) {
+            target = new InetSocketAddress(InetAddress.getByName(host), port);
+        } else if (proxy.type() == Proxy.Type.SOCKS) {
+            // The SOCKS proxy resolves the name
+            target = InetSocketAddress.createUnresolved(host, port);
+        } else {
+            InetSocketAddress proxyAddress = (InetSocketAddress) proxy.address();
+            target = proxyAddress.isUnresolved()
+                    ? new InetSocketAddress(InetAddress.getByName(proxyAddress.getHostString()), proxyAddress.getPort())
+                    : proxyAddress;
+        }
+        timing.setDns(System.nanoTime() - phaseStart);
+
+        Socket socket = proxy.type() == Proxy.Type.SOCKS ? new Socket(proxy) : new Socket();
+        try {
+            phaseStart = System.nanoTime();
+            socket.connect(target, connectTimeout);
+            timing.setConnect(System.nanoTime() - phaseStart);
+            socket.setSoTimeout(readTimeout);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+
+            timing.setTls(0);
+            if (secure) {
+                phaseStart = System.nanoTime();
+                if (proxy.type() == Proxy.Type.HTTP) {
+                    openTunnel(socket, host, port);
+                }
+                SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+                timing.setTls(System.nanoTime() - phaseStart);
+                socket = sslSocket;
+            }
+            return new PooledConnection(hostKey, socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // Asks an HTTP proxy for a raw connection to the host, over which TLS then runs end to end
+    private static void openTunnel(Socket socket, String host, int port) throws IOException {
+        String authority = host + ":" + port;
+        OutputStream out = socket.getOutputStream();
+        out.write(("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        // Read unbuffered: nothing after the proxy's headers belongs to us
+        InputStream in = socket.getInputStream();
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new EOFException("Proxy closed the connection instead of answering CONNECT");
+        }
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[1].startsWith("2")) {
+            throw new IOException("Proxy refused to connect to " + authority + ": " + statusLine);
+        }
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            // Proxy headers are of no use once the tunnel is open
+        }
+    }
+
+    private byte[] buildRequestHead(URL url, int port, String method, Map<String, String> headers,
+                                    RequestBody body, boolean chunked, boolean absoluteForm) {
+        StringBuilder head = new StringBuilder();
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+        if (absoluteForm) {
+            path = url.getProtocol() + "://" + url.getHost() + (url.getPort() != -1 ? ":" + url.getPort() : "") + path;
+        }
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+
+        boolean hasHost = false;
+        boolean hasUserAgent = false;
+        boolean hasAccept = false;
+        boolean hasAcceptEncoding = false;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            String name = header.getKey();
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Connection")
+                    || name.equalsIgnoreCase("Transfer-Encoding")) {
+                continue;
+            }
+            hasHost |= name.equalsIgnoreCase("Host");
+            hasUserAgent |= name.equalsIgnoreCase("User-Agent");
+            hasAccept |= name.equalsIgnoreCase("Accept");
+            hasAcceptEncoding |= name.equalsIgnoreCase("Accept-Encoding");
+            head.append(name).append(": ").append(header.getValue()).append("\r\n");
+        }
+
+        if (!hasHost) {
+            head.append("Host: ").append(url.getHost());
+            if (port != url.getDefaultPort()) {
+                head.append(':').append(port);
+            }
+            head.append("\r\n");
+        }
+        if (!hasUserAgent) {
+            head.append("User-Agent: curlbaby\r\n");
+        }
+        if (!hasAccept) {
+            head.append("Accept: */*\r\n");
+        }
+        if (!hasAcceptEncoding) {
+            head.append("Accept-Encoding: ").append(ContentDecoder.ACCEPT_ENCODING).append("\r\n");
+        }
+        head.append("Connection: keep-alive\r\n");
+        if (chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else if (body != null) {
+            head.append("Content-Length: ").append(body.contentLength()).append("\r\n");
+        } else if (method.equals("POST") || method.equals("PUT")) {
+            head.append("Content-Length: 0\r\n");
+        }
+        head.append("\r\n");
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private HttpResponse readResponse(PooledConnection connection, String method, RequestTiming timing,
+                                      long connectionReadyAt) throws IOException {
+        BufferedInputStream in = connection.getInputStream();
+
+        in.mark(1);
+        if (in.read() == -1) {
+            throw new EOFException("Connection closed before a response was received");
+        }
+        in.reset();
+        timing.markFirstByte(connectionReadyAt);
+
+        String statusLine;
+        Map<String, List<String>> headers;
+        int status;
+        do {
+            statusLine = readLine(in);
+            if (statusLine == null) {
+                throw new EOFException("Connection closed before a response was received");
+            }
+            headers = readHeaders(in);
+            status = parseStatus(statusLine);
+        } while (status >= 100 && status < 200 && status != 101);
+
+        String[] statusParts = statusLine.split(" ", 3);
+        String protocol = statusParts[0];
+        String message = statusParts.length > 2 ? statusParts[2] : "";
+
+        boolean keepAlive = isKeepAlive(protocol, headerValue(headers, "Connection"));
+        String transferEncoding = headerValue(headers, "Transfer-Encoding");
+        String contentLength = headerValue(headers, "Content-Length");
+
+        InputStream body;
+        if (method.equals("HEAD") || status == 204 || status == 304) {
+            body = new FixedLengthInputStream(in, 0);
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            body = new ChunkedInputStream(in);
+        } else if (contentLength != null) {
+            try {
+                body = new FixedLengthInputStream(in, Long.parseLong(contentLength.trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+        } else {
+            // No framing information: the body runs until the server closes the connection
+            body = in;
+            keepAlive = false;
+        }
+
+        return new HttpResponse(status, message, protocol, headers,
+                new ReleasingInputStream(body, connection, keepAlive), timing);
+    }
+
+    private int parseStatus(String statusLine) throws IOException {
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+    }
+
+    private Map<String, List<String>> readHeaders(InputStream in) throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            String existing = null;
+            for (String key : headers.keySet()) {
+                if (key.equalsIgnoreCase(name)) {
+                    existing = key;
+                    break;
+                }
+            }
+            headers.computeIfAbsent(existing != null ? existing : name, k -> new ArrayList<>()).add(value);
+        }
+        return headers;
+    }
+
+    private static String headerValue(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return String.join(", ", entry.getValue());
+            }
+        }
+        return null;
+    }
+
+    private boolean isKeepAlive(String protocol, String connectionHeader) {
+        if (connectionHeader != null) {
+            String value = connectionHeader.toLowerCase();
+            if (value.contains("close")) {
+                return false;
+            }
+            if (value.contains("keep-alive")) {
+                return true;
+            }
+        }
+        return !protocol.equals("HTTP/1.0");
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void close() {
+        pool.clear();
+    }
+
+    // Hands the connection back to the pool once the body has been read to the end
+    private class ReleasingInputStream extends FilterInputStream {
+        private final PooledConnection connection;
+        private final boolean keepAlive;
+        private boolean released;
+
+        ReleasingInputStream(InputStream body, PooledConnection connection, boolean keepAlive) {
+            super(body);
+            this.connection = connection;
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = guard(() -> super.read());
+            if (b == -1) {
+                release(true);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = guard(() -> super.read(buffer, offset, length));
+            if (n == -1) {
+                release(true);
+            }
+            return n;
+        }
+
+        private int guard(IoCall call) throws IOException {
+            if (released) {
+                return -1;
+            }
+            try {
+                return call.run();
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+        }
+
+        private void release(boolean completed) {
+            if (!released) {
+                released = true;
+                pool.release(connection, completed && keepAlive);
+            }
+        }
+
+        @Override
+        public void close() {
+            // Closing before the end leaves unread bytes on the wire, so the socket can't be reused
+            release(false);
+        }
+    }
+
+    private interface IoCall {
+        int run() throws IOException;
+    }
+
+    private static class FixedLengthInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed with " + remaining + " bytes left to read");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n == -1) {
+                throw new EOFException("Connection closed with " + remaining + " bytes left to read");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+
+    private static class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private long chunkRemaining;
+        private boolean finished;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (finished) {
+                return false;
+            }
+            if (chunkRemaining == 0) {
+                String sizeLine = readLine(in);
+                if (sizeLine != null && sizeLine.isEmpty()) {
+                    // CRLF that terminates the previous chunk
+                    sizeLine = readLine(in);
+                }
+                if (sizeLine == null) {
+                    throw new EOFException("Connection closed inside a chunked body");
+                }
+                int extension = sizeLine.indexOf(';');
+                String size = (extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim();
+                try {
+                    chunkRemaining = Long.parseLong(size, 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid chunk size: " + sizeLine);
+                }
+                if (chunkRemaining == 0) {
+                    // Skip trailers
+                    String trailer;
+                    while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                        // ignored
+                    }
+                    finished = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed inside a chunked body");
+            }
+            chunkRemaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = in.read(buffer, offset, (int) Math.min(length, chunkRemaining));
+            if (n == -1) {
+                throw new EOFException("Connection closed inside a chunked body");
+            }
+            chunkRemaining -= n;
+            return n;
+        }
+    }
+
+    // Frames everything written as HTTP/1.1 chunks; finish() writes the terminating chunk
+    // but leaves the connection open
+    private static class ChunkedOutputStream extends OutputStream {
+        private static final byte[] CRLF = {'\r', '\n'};
+        private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+        private final OutputStream out;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.write(buffer, offset, length);
+            out.write(CRLF);
+        }
+
+        void finish() throws IOException {
+            out.write(LAST_CHUNK);
+        }
+    }
+}
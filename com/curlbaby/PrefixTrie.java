@@ -0,0 +1,115 @@
+package com.curlbaby;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// A set of words that can be listed by prefix in sorted order. A word added twice has to be
+// removed twice, so names that appear in several places stay until the last one goes.
+public class PrefixTrie {
+    private static final char NO_STOP = '\uffff';
+
+    private final Node root = new Node();
+    private int size;
+
+    public void add(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.children.computeIfAbsent(word.charAt(i), c -> new Node());
+        }
+        if (node.count++ == 0) {
+            size++;
+        }
+    }
+
+    public void remove(String word) {
+        remove(root, word, 0);
+    }
+
+    // True if the node is left without words and can be dropped
+    private boolean remove(Node node, String word, int depth) {
+        if (depth == word.length()) {
+            if (node.count > 0 && --node.count == 0) {
+                size--;
+            }
+        } else {
+            Node child = node.children.get(word.charAt(depth));
+            if (child != null && remove(child, word, depth + 1)) {
+                node.children.remove(word.charAt(depth));
+            }
+        }
+        return node.count == 0 && node.children.isEmpty();
+    }
+
+    public boolean contains(String word) {
+        Node node = find(word);
+        return node != null && node.count > 0;
+    }
+
+    // Up to limit words starting with the prefix, in order
+    public List<String> complete(String prefix, int limit) {
+        return complete(prefix, NO_STOP, limit);
+    }
+
+    // Like complete, but words running past the prefix end at the next stop character, so URLs
+    // come back one path segment at a time ("http://host/" rather than every path on host). A stop
+    // character after ':' or after another stop character, as in "http://", does not count.
+    public List<String> complete(String prefix, char stop, int limit) {
+        List<String> words = new ArrayList<>();
+        Node node = find(prefix);
+        if (node != null) {
+            collect(node, new StringBuilder(prefix), stop, words, limit);
+        }
+        return words;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.count = 0;
+        size = 0;
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, StringBuilder word, char stop, List<String> words, int limit) {
+        if (node.count > 0) {
+            words.add(word.toString());
+        }
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            if (words.size() >= limit) {
+                return;
+            }
+            word.append(child.getKey());
+            if (child.getKey() == stop && isSegmentEnd(word)) {
+                words.add(word.toString());
+            } else {
+                collect(child.getValue(), word, stop, words, limit);
+            }
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    private static boolean isSegmentEnd(StringBuilder word) {
+        if (word.length() < 2) {
+            return true;
+        }
+        char before = word.charAt(word.length() - 2);
+        return before != ':' && before != word.charAt(word.length() - 1);
+    }
+
+    private static class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private int count;
+    }
+}
@@ -0,0 +1,20 @@
+package com.curlbaby;
+
+// Where commands get answers to their questions from. The console asks the user; a script
+// answers every question with its default so that no command ever waits for input.
+public interface Prompter {
+    // The raw line typed after the prompt, or null once input has run out
+    String readLine(String prompt);
+
+    // Yes/no questions that guard something destructive, like deleting a group
+    boolean confirm(String prompt);
+
+    // False when nobody is there to answer; optional questions are skipped altogether
+    boolean isInteractive();
+
+    // The trimmed answer; empty means take the default
+    default String ask(String prompt) {
+        String line = readLine(prompt);
+        return line != null ? line.trim() : "";
+    }
+}
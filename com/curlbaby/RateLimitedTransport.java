@@ -0,0 +1,105 @@
+package com.curlbaby;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.curlbaby.HttpRequestHandler.Request;
+
+// Holds each request back until its host's limiter lets it through. A concurrency slot stays
+// taken until the response body has been read or closed, since that is when the connection
+// to the downstream is free again.
+public class RateLimitedTransport implements HttpTransport {
+    private final HttpTransport delegate;
+    private final HostLimits limits;
+
+    public RateLimitedTransport(HttpTransport delegate, HostLimits limits) {
+        this.delegate = delegate;
+        this.limits = limits;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public HttpResponse execute(Request request) throws IOException {
+        HostLimits.Limiter limiter = limits.forUrl(request.getUrl());
+        if (limiter == null) {
+            return delegate.execute(request);
+        }
+
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the rate limit of " + limiter.getRule().getPattern());
+        }
+        if (!limiter.capsConcurrency()) {
+            return delegate.execute(request);
+        }
+
+        HttpResponse response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException | RuntimeException e) {
+            limiter.release();
+            throw e;
+        }
+        HttpResponse releasing = new HttpResponse(response.getStatus(), response.getMessage(),
+                response.getProtocol(), response.getHeaders(), new ReleasingInputStream(response.getBody(), limiter),
+                response.getTiming());
+        releasing.setRetries(response.getRetries());
+        releasing.setHedge(response.getHedge());
+        return releasing;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static class ReleasingInputStream extends FilterInputStream {
+        private final HostLimits.Limiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingInputStream(InputStream in, HostLimits.Limiter limiter) {
+            super(in);
+            this.limiter = limiter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                release();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n == -1) {
+                release();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.curlbaby;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// A request body the transports stream onto the connection. It can be opened more than once,
+// since redirects and retries on a stale connection send it again.
+public interface RequestBody {
+    // Length in bytes, or -1 if unknown, in which case it is sent chunked
+    long contentLength();
+
+    InputStream open() throws IOException;
+
+    // What the request details section shows instead of the content
+    String describe();
+
+    default void writeTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = open()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    static RequestBody ofBytes(byte[] content) {
+        return new RequestBody() {
+            @Override
+            public long contentLength() {
+                return content.length;
+            }
+
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public String describe() {
+                return content.length + " bytes";
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(content);
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.curlbaby;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Phase durations of one request in nanoseconds; -1 means the transport could not observe the phase
+public class RequestTiming {
+    public static final String REDIRECT = "Redirect";
+    public static final String DNS = "DNS";
+    public static final String CONNECT = "Connect";
+    public static final String TLS = "TLS";
+    public static final String TTFB = "TTFB";
+    public static final String DOWNLOAD = "Download";
+
+    private final long startedAt = System.nanoTime();
+    private long redirect = 0;
+    private long dns = -1;
+    private long connect = -1;
+    private long tls = -1;
+    private long ttfb = -1;
+    private long download = -1;
+    private long firstByteAt = -1;
+    private long completedAt = -1;
+    private boolean reusedConnection;
+
+    // Everything up to now was spent on redirect hops; the phases restart with the next hop
+    public synchronized void markRedirect() {
+        redirect = System.nanoTime() - startedAt;
+        firstByteAt = -1;
+        completedAt = -1;
+        ttfb = -1;
+        download = -1;
+    }
+
+    public void setDns(long nanos) {
+        this.dns = nanos;
+    }
+
+    public void setConnect(long nanos) {
+        this.connect = nanos;
+    }
+
+    public void setTls(long nanos) {
+        this.tls = nanos;
+    }
+
+    // Called once the connection is ready; resets the phases of a previous redirect hop
+    public void setReusedConnection(boolean reusedConnection) {
+        this.reusedConnection = reusedConnection;
+        if (reusedConnection) {
+            dns = 0;
+            connect = 0;
+            tls = 0;
+        }
+    }
+
+    public void markFirstByte(long connectionReadyAt) {
+        firstByteAt = System.nanoTime();
+        ttfb = firstByteAt - connectionReadyAt;
+    }
+
+    public synchronized void markComplete() {
+        if (completedAt == -1) {
+            completedAt = System.nanoTime();
+            if (firstByteAt != -1) {
+                download = completedAt - firstByteAt;
+            }
+        }
+    }
+
+    public boolean isComplete() {
+        return completedAt != -1;
+    }
+
+    public boolean isReusedConnection() {
+        return reusedConnection;
+    }
+
+    public long getRedirect() {
+        return redirect;
+    }
+
+    public long getDns() {
+        return dns;
+    }
+
+    public long getConnect() {
+        return connect;
+    }
+
+    public long getTls() {
+        return tls;
+    }
+
+    public long getTtfb() {
+        return ttfb;
+    }
+
+    public long getDownload() {
+        return download;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getTotal() {
+        return (completedAt != -1 ? completedAt : System.nanoTime()) - startedAt;
+    }
+
+    // Phases in waterfall order, for display and for aggregation by other commands
+    public Map<String, Long> getPhases() {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        if (redirect > 0) {
+            phases.put(REDIRECT, redirect);
+        }
+        phases.put(DNS, dns);
+        phases.put(CONNECT, connect);
+        phases.put(TLS, tls);
+        phases.put(TTFB, ttfb);
+        phases.put(DOWNLOAD, download);
+        return phases;
+    }
+}
@@ -0,0 +1,89 @@
+package com.curlbaby;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Streams a response body to the terminal as it arrives, formatting JSON on the fly.
+// Memory use stays constant no matter how large the body is.
+public class ResponseRenderer {
+    private final JsonFormatter jsonFormatter;
+    
+    public ResponseRenderer(JsonFormatter jsonFormatter) {
+        this.jsonFormatter = jsonFormatter;
+    }
+    
+    public void render(HttpResponse response) throws IOException {
+        Writer out = new OutputStreamWriter(System.out);
+        Reader reader = new InputStreamReader(response.getBody(), charsetOf(response.getHeader("Content-Type")));
+        PushbackReader in = new PushbackReader(new FlushingReader(reader, out), 1);
+        
+        int first;
+        while ((first = in.read()) != -1 && Character.isWhitespace(first)) {
+            // Leading whitespace is dropped, like the trimmed buffered output used to be
+        }
+        
+        if (first != -1) {
+            in.unread(first);
+            if (first == '{' || first == '[') {
+                jsonFormatter.format(in, out);
+            } else {
+                char[] buffer = new char[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+    
+    static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String[] pair = parameter.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                    try {
+                        return Charset.forName(pair[1].trim().replace("\"", ""));
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+    
+    // Pushes everything written so far to the terminal before blocking on the network again
+    private static class FlushingReader extends FilterReader {
+        private final Writer out;
+        
+        FlushingReader(Reader in, Writer out) {
+            super(in);
+            this.out = out;
+        }
+        
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (!in.ready()) {
+                out.flush();
+            }
+            return in.read(buffer, offset, length);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (!in.ready()) {
+                out.flush();
+            }
+            return in.read();
+        }
+    }
+}
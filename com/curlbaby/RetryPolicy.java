@@ -0,0 +1,217 @@
+package com.curlbaby;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+// When and how often a request is sent again. Written as space separated key=value pairs,
+// e.g. "attempts=4 status=429,5xx backoff=100ms..5s budget=20% hedge=p95"; the same text is
+// what gets stored for groups and saved requests.
+public class RetryPolicy {
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+
+    private int maxAttempts = 3;
+    private final Set<Integer> statuses = new TreeSet<>(List.of(429, 502, 503, 504));
+    private boolean retryErrors = true;
+    private boolean allMethods = false;
+    private long baseDelayMillis = 100;
+    private long maxDelayMillis = 5000;
+    private double budgetRatio = 0.2;
+    private double hedgePercentile = -1;
+    private long hedgeDelayMillis = -1;
+
+    public static RetryPolicy parse(String spec) {
+        RetryPolicy policy = new RetryPolicy();
+        for (String token : spec.trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int equals = token.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value in retry policy, got: " + token);
+            }
+            String key = token.substring(0, equals).toLowerCase();
+            String value = token.substring(equals + 1).toLowerCase();
+            try {
+                policy.set(key, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+            }
+        }
+        return policy;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "attempts":
+                maxAttempts = Integer.parseInt(value);
+                if (maxAttempts < 1) {
+                    throw new IllegalArgumentException("attempts must be at least 1");
+                }
+                break;
+            case "status":
+                statuses.clear();
+                for (String status : value.split(",")) {
+                    if (status.isEmpty() || status.equals("none")) {
+                        continue;
+                    }
+                    if (status.endsWith("xx") && status.length() == 3) {
+                        int hundred = Integer.parseInt(status.substring(0, 1)) * 100;
+                        for (int code = hundred; code < hundred + 100; code++) {
+                            statuses.add(code);
+                        }
+                    } else {
+                        statuses.add(Integer.parseInt(status));
+                    }
+                }
+                break;
+            case "errors":
+                retryErrors = parseSwitch(key, value);
+                break;
+            case "methods":
+                if (!value.equals("all") && !value.equals("idempotent")) {
+                    throw new IllegalArgumentException("methods must be idempotent or all");
+                }
+                allMethods = value.equals("all");
+                break;
+            case "backoff": {
+                String[] range = value.split("\\.\\.", 2);
+                baseDelayMillis = CommandOptions.parseDurationMillis(range[0]);
+                maxDelayMillis = range.length > 1 ? CommandOptions.parseDurationMillis(range[1]) : baseDelayMillis * 32;
+                if (maxDelayMillis < baseDelayMillis) {
+                    throw new IllegalArgumentException("backoff maximum is below its base delay");
+                }
+                break;
+            }
+            case "budget":
+                budgetRatio = Double.parseDouble(value.endsWith("%") ? value.substring(0, value.length() - 1) : value) / 100;
+                break;
+            case "hedge":
+                hedgePercentile = -1;
+                hedgeDelayMillis = -1;
+                if (value.startsWith("p")) {
+                    hedgePercentile = Double.parseDouble(value.substring(1));
+                    if (hedgePercentile <= 0 || hedgePercentile >= 100) {
+                        throw new IllegalArgumentException("hedge percentile must be between p0 and p100");
+                    }
+                } else if (!value.equals("off")) {
+                    hedgeDelayMillis = CommandOptions.parseDurationMillis(value);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown retry policy key: " + key
+                        + " (expected attempts, status, errors, methods, backoff, budget or hedge)");
+        }
+    }
+
+    private static boolean parseSwitch(String key, String value) {
+        if (value.equals("on")) {
+            return true;
+        }
+        if (value.equals("off")) {
+            return false;
+        }
+        throw new IllegalArgumentException(key + " must be on or off");
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    // Only methods that are safe to repeat are retried or hedged, unless methods=all
+    public boolean allowsRetry(String method) {
+        return maxAttempts > 1 && (allMethods || isIdempotent(method));
+    }
+
+    public static boolean isIdempotent(String method) {
+        return IDEMPOTENT_METHODS.contains(method);
+    }
+
+    public boolean retriesStatus(int status) {
+        return statuses.contains(status);
+    }
+
+    public boolean retriesErrors() {
+        return retryErrors;
+    }
+
+    // A duplicate of a slow request could change server state, so only reads are hedged
+    public boolean allowsHedge(String method) {
+        return (hedgePercentile > 0 || hedgeDelayMillis >= 0) && (method.equals("GET") || method.equals("HEAD"));
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    // Full jitter: a uniformly random delay up to the exponential backoff for this attempt,
+    // so clients that failed together do not retry together
+    public long backoffMillis(int attempt) {
+        long ceiling = baseDelayMillis << Math.min(attempt - 1, 30);
+        ceiling = Math.min(maxDelayMillis, ceiling < 0 ? maxDelayMillis : ceiling);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public String toSpec() {
+        List<String> parts = new ArrayList<>();
+        parts.add("attempts=" + maxAttempts);
+        parts.add("status=" + (statuses.isEmpty() ? "none" : describeStatuses()));
+        parts.add("errors=" + (retryErrors ? "on" : "off"));
+        parts.add("methods=" + (allMethods ? "all" : "idempotent"));
+        parts.add("backoff=" + baseDelayMillis + "ms.." + maxDelayMillis + "ms");
+        parts.add("budget=" + trimNumber(budgetRatio * 100) + "%");
+        if (hedgePercentile > 0) {
+            parts.add("hedge=p" + trimNumber(hedgePercentile));
+        } else if (hedgeDelayMillis >= 0) {
+            parts.add("hedge=" + hedgeDelayMillis + "ms");
+        } else {
+            parts.add("hedge=off");
+        }
+        return String.join(" ", parts);
+    }
+
+    // Whole hundreds are written back as 5xx so stored specs stay readable
+    private String describeStatuses() {
+        List<String> parts = new ArrayList<>();
+        Set<Integer> remaining = new TreeSet<>(statuses);
+        for (int hundred = 100; hundred < 600; hundred += 100) {
+            boolean whole = true;
+            for (int code = hundred; code < hundred + 100 && whole; code++) {
+                whole = remaining.contains(code);
+            }
+            if (whole) {
+                parts.add(hundred / 100 + "xx");
+                for (int code = hundred; code < hundred + 100; code++) {
+                    remaining.remove(code);
+                }
+            }
+        }
+        for (int code : remaining) {
+            parts.add(String.valueOf(code));
+        }
+        return String.join(",", parts);
+    }
+
+    private static String trimNumber(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        return toSpec();
+    }
+}
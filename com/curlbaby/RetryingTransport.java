@@ -0,0 +1,252 @@
+package com.curlbaby;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import com.curlbaby.HttpRequestHandler.Request;
+
+// Sends a request again when the policy says the failure is worth retrying, waiting with
+// jittered exponential backoff, and optionally hedges slow reads with a duplicate request.
+// Retries draw from a budget that refills with each request, so a failing upstream sees at
+// most a fixed fraction of extra load instead of every request multiplied by its attempts.
+public class RetryingTransport implements HttpTransport {
+    private static final double MIN_BUDGET = 10;
+    private static final double MAX_BUDGET = 100;
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private volatile HttpTransport delegate;
+    private final ExecutorService hedgeExecutor = WorkerThreads.newExecutor("hedge");
+    private final Map<String, LatencyHistogram> latencyByHost = new ConcurrentHashMap<>();
+    private volatile RetryPolicy defaultPolicy;
+    private double budget = MIN_BUDGET;
+
+    public RetryingTransport(HttpTransport delegate, RetryPolicy defaultPolicy) {
+        this.delegate = delegate;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public void setDefaultPolicy(RetryPolicy defaultPolicy) {
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    // Sends later requests through another transport, keeping the retry budget and the latency
+    // seen per host. The old transport is left open for its owner to close.
+    public void setDelegate(HttpTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public HttpResponse execute(Request request) throws IOException {
+        RetryPolicy policy = request.getRetryPolicy() != null ? request.getRetryPolicy() : defaultPolicy;
+        if (policy == null) {
+            return delegate.execute(request);
+        }
+        deposit(policy.getBudgetRatio());
+
+        boolean retryable = policy.allowsRetry(request.getMethod());
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = !retryable || attempt >= policy.getMaxAttempts();
+            HttpResponse response;
+            try {
+                response = send(request, policy);
+            } catch (IOException e) {
+                if (lastAttempt || !policy.retriesErrors() || !withdraw()) {
+                    throw e;
+                }
+                pause(policy.backoffMillis(attempt));
+                continue;
+            }
+
+            if (lastAttempt || !policy.retriesStatus(response.getStatus()) || !withdraw()) {
+                response.setRetries(attempt - 1);
+                return response;
+            }
+            long delay = retryAfterMillis(response, policy);
+            discard(response);
+            pause(delay >= 0 ? delay : policy.backoffMillis(attempt));
+        }
+    }
+
+    private HttpResponse send(Request request, RetryPolicy policy) throws IOException {
+        String host = hostOf(request.getUrl());
+        LatencyHistogram latency = latencyByHost.computeIfAbsent(host, h -> new LatencyHistogram());
+        long hedgeDelay = policy.allowsHedge(request.getMethod()) ? hedgeDelayNanos(policy, latency) : -1;
+        if (hedgeDelay >= 0) {
+            return sendHedged(request, hedgeDelay, latency);
+        }
+        long start = System.nanoTime();
+        HttpResponse response = delegate.execute(request);
+        record(latency, response, start);
+        return response;
+    }
+
+    // Time to response headers of single, unhedged requests. Recording the winner of a hedge
+    // instead would pull the percentile down and make hedging ever more eager.
+    private static void record(LatencyHistogram latency, HttpResponse response, long start) {
+        if (response.getStatus() < 500) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    // Sends the request, and a copy of it if no answer arrived within the delay; the first
+    // response wins and the other is closed once it arrives
+    private HttpResponse sendHedged(Request request, long delayNanos, LatencyHistogram latency) throws IOException {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse> primary = submit(request);
+        primary.thenAccept(response -> record(latency, response, start));
+        try {
+            return primary.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Slow enough to hedge
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            primary.thenAccept(HttpResponse::close);
+            throw new IOException("Request interrupted");
+        }
+
+        CompletableFuture<HttpResponse> hedge = submit(request.copy());
+        CompletableFuture<Object> first = CompletableFuture.anyOf(primary, hedge);
+        CompletableFuture<HttpResponse> winner;
+        try {
+            first.get();
+            winner = primary.isDone() && !primary.isCompletedExceptionally() ? primary : hedge;
+        } catch (ExecutionException e) {
+            // One of them failed; the answer is whatever the other one does
+            winner = primary.isCompletedExceptionally() ? hedge : primary;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            primary.thenAccept(HttpResponse::close);
+            hedge.thenAccept(HttpResponse::close);
+            throw new IOException("Request interrupted");
+        }
+
+        CompletableFuture<HttpResponse> loser = winner == primary ? hedge : primary;
+        HttpResponse response;
+        try {
+            response = winner.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted");
+        } finally {
+            loser.thenAccept(HttpResponse::close);
+        }
+        response.setHedge(winner == hedge ? "hedge answered first" : "original answered first");
+        return response;
+    }
+
+    private CompletableFuture<HttpResponse> submit(Request request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return delegate.execute(request);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, hedgeExecutor);
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    // A fixed hedge delay applies at once; a percentile needs enough samples for this host first
+    private long hedgeDelayNanos(RetryPolicy policy, LatencyHistogram latency) {
+        if (policy.getHedgeDelayMillis() >= 0) {
+            return TimeUnit.MILLISECONDS.toNanos(policy.getHedgeDelayMillis());
+        }
+        if (latency.getCount() < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        return latency.getValueAtPercentile(policy.getHedgePercentile());
+    }
+
+    private synchronized void deposit(double ratio) {
+        budget = Math.min(MAX_BUDGET, budget + ratio);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    // Retry-After in seconds is honoured when it is within the policy's longest backoff
+    private static long retryAfterMillis(HttpResponse response, RetryPolicy policy) {
+        String retryAfter = response.getHeader("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            long millis = Long.parseLong(retryAfter.trim()) * 1000;
+            return millis <= policy.getMaxDelayMillis() ? millis : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void pause(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted");
+        }
+    }
+
+    // Reads a short error body to the end so the pooled connection can serve the next attempt;
+    // longer ones are cut off by close(), which drops the connection
+    private static void discard(HttpResponse response) {
+        try {
+            InputStream body = response.getBody();
+            byte[] skip = new byte[8192];
+            long remaining = 64 * 1024;
+            int n;
+            while (remaining > 0 && (n = body.read(skip)) != -1) {
+                remaining -= n;
+            }
+        } catch (IOException e) {
+            // The connection is dropped instead
+        }
+        response.close();
+    }
+
+    private static String hostOf(String url) {
+        try {
+            URL parsed = new URL(url);
+            return parsed.getHost() + ":" + parsed.getPort();
+        } catch (IOException e) {
+            return url;
+        }
+    }
+
+    @Override
+    public void close() {
+        hedgeExecutor.shutdownNow();
+        delegate.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.curlbaby;
+
+// The Ctrl-R prompt: each typed character narrows the search to the newest command containing
+// the query, Ctrl-R steps to older matches, Enter runs the match, Escape or any other control
+// key keeps it on the line for editing, and Ctrl-G puts back what was there before.
+public class ReverseSearch {
+    public static final int CTRL_R = 18;
+    private static final int CTRL_C = 3;
+    private static final int CTRL_G = 7;
+    private static final int BACKSPACE = 127;
+    private static final int CTRL_H = 8;
+
+    private final UIManager uiManager;
+    private final HistorySearch search;
+
+    public static class Result {
+        private final String line;
+        private final boolean execute;
+
+        Result(String line, boolean execute) {
+            this.line = line;
+            this.execute = execute;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        // True if Enter was pressed and the line should run as it is
+        public boolean isExecute() {
+            return execute;
+        }
+    }
+
+    public ReverseSearch(UIManager uiManager, HistorySearch search) {
+        this.uiManager = uiManager;
+        this.search = search;
+    }
+
+    public Result run(TerminalSession terminal, String original) {
+        StringBuilder query = new StringBuilder();
+        String line = original;
+        int match = -1;
+        boolean failed = false;
+        render(query, line, false);
+
+        while (true) {
+            int key = terminal.readKey();
+            if (key == TerminalSession.EOF) {
+                return finish(line, false);
+            } else if (key == '\n' || key == '\r') {
+                return finish(line, true);
+            } else if (key == CTRL_G || key == CTRL_C) {
+                return finish(original, false);
+            } else if (key == CTRL_R) {
+                int found = query.length() == 0 ? -1 : search.findBefore(query.toString(), match >= 0 ? match : search.size());
+                failed = found < 0;
+                if (!failed) {
+                    match = found;
+                    line = search.get(match);
+                }
+            } else if (key == BACKSPACE || key == CTRL_H) {
+                if (query.length() > 0) {
+                    query.setLength(query.length() - 1);
+                }
+                match = query.length() == 0 ? -1 : search.findBefore(query.toString(), search.size());
+                failed = query.length() > 0 && match < 0;
+                line = match >= 0 ? search.get(match) : (query.length() == 0 ? original : line);
+            } else if (key >= 32 && key < 127) {
+                query.append((char) key);
+                // The current match may still contain the longer query
+                int found = search.findBefore(query.toString(), match >= 0 ? match + 1 : search.size());
+                failed = found < 0;
+                if (!failed) {
+                    match = found;
+                    line = search.get(match);
+                }
+            } else {
+                return finish(line, false);
+            }
+            render(query, line, failed);
+        }
+    }
+
+    private void render(CharSequence query, String line, boolean failed) {
+        System.out.print("\r\u001b[2K" + uiManager.getBoldYellow()
+                + (failed ? "(failed reverse-i-search)" : "(reverse-i-search)")
+                + uiManager.getReset() + "`" + query + "': " + line);
+        System.out.flush();
+    }
+
+    // Leaves the cursor at the start of an empty line for the caller to redraw the prompt
+    private Result finish(String line, boolean execute) {
+        System.out.print("\r\u001b[2K");
+        return new Result(line, execute);
+    }
+}
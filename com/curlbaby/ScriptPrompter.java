@@ -0,0 +1,26 @@
+package com.curlbaby;
+
+// Answers for unattended runs: every question takes its default, and confirmations are
+// declined unless the script was started with --yes.
+public class ScriptPrompter implements Prompter {
+    private final boolean assumeYes;
+
+    public ScriptPrompter(boolean assumeYes) {
+        this.assumeYes = assumeYes;
+    }
+
+    @Override
+    public String readLine(String prompt) {
+        return null;
+    }
+
+    @Override
+    public boolean confirm(String prompt) {
+        return assumeYes;
+    }
+
+    @Override
+    public boolean isInteractive() {
+        return false;
+    }
+}
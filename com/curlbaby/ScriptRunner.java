@@ -0,0 +1,105 @@
+package com.curlbaby;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs commands from a file or stdin, one per line, through a single CommandProcessor, so a
+// suite of checks pays for one JVM start and reuses warm connections. Blank lines and lines
+// starting with # are skipped; a trailing backslash continues a command on the next line.
+// A command failed if it printed an error or got a response with an error status.
+public class ScriptRunner {
+    private final UIManager uiManager;
+    private final CommandProcessor commandProcessor;
+    private final boolean failFast;
+    private final List<String> failures = new ArrayList<>();
+    private int commands;
+
+    public ScriptRunner(UIManager uiManager, CommandProcessor commandProcessor, boolean failFast) {
+        this.uiManager = uiManager;
+        this.commandProcessor = commandProcessor;
+        this.failFast = failFast;
+    }
+
+    // The process exit code: 0 when every command succeeded, 1 otherwise
+    public int run(BufferedReader reader) throws IOException {
+        long start = System.nanoTime();
+        StringBuilder pending = new StringBuilder();
+        int lineNumber = 0;
+        int commandLine = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (pending.length() == 0) {
+                commandLine = lineNumber;
+            }
+            if (trimmed.endsWith("\\")) {
+                pending.append(trimmed, 0, trimmed.length() - 1).append(' ');
+                continue;
+            }
+            pending.append(trimmed);
+            String input = pending.toString().trim();
+            pending.setLength(0);
+            if (!execute(input, commandLine)) {
+                break;
+            }
+        }
+        if (pending.length() > 0) {
+            execute(pending.toString().trim(), commandLine);
+        }
+
+        System.out.println();
+        uiManager.printInfo(String.format("%d commands in %s, %d failed",
+                commands, uiManager.formatDuration(System.nanoTime() - start), failures.size()));
+        for (String failure : failures) {
+            System.out.println("  " + uiManager.getBoldRed() + failure + uiManager.getReset());
+        }
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    // False once the script should stop
+    private boolean execute(String input, int lineNumber) {
+        if (input.isEmpty() || input.startsWith("#")) {
+            return true;
+        }
+        String[] commandParts = input.split("\\s+", 2);
+        String command = commandParts[0].toLowerCase();
+        String argument = commandParts.length > 1 ? commandParts[1] : "";
+        if (command.equals("exit") || command.equals("quit")) {
+            return false;
+        }
+
+        uiManager.printPrompt();
+        System.out.println(input);
+        if (command.equals("history")) {
+            uiManager.printWarning("Skipped: history is not kept for scripts");
+            return true;
+        }
+
+        commands++;
+        if (!dispatch(command, argument)) {
+            failures.add("line " + lineNumber + ": " + input);
+            return !failFast;
+        }
+        return true;
+    }
+
+    // A single command given on the command line; only its own output is printed
+    public int runCommand(String command, String argument) {
+        return dispatch(command, argument) ? 0 : 1;
+    }
+
+    // False if the command failed
+    private boolean dispatch(String command, String argument) {
+        int failuresBefore = uiManager.getFailureCount();
+        try {
+            commandProcessor.processCommand(command, argument);
+        } catch (RuntimeException e) {
+            uiManager.printError("Command failed: " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+        System.out.flush();
+        return uiManager.getFailureCount() == failuresBefore;
+    }
+}
@@ -2,19 +2,19 @@ package com.curlbaby;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SimpleJsonEditor {
     private final UIManager uiManager;
-    private final Scanner scanner;
+    private final Prompter prompter;
     private final JsonFormatter jsonFormatter;
     private List<String> lines = new ArrayList<>();
     
-    public SimpleJsonEditor(UIManager uiManager, Scanner scanner, JsonFormatter jsonFormatter) {
+    public SimpleJsonEditor(UIManager uiManager, Prompter prompter, JsonFormatter jsonFormatter) {
         this.uiManager = uiManager;
-        this.scanner = scanner;
+        this.prompter = prompter;
         this.jsonFormatter = jsonFormatter;
     }
     
@@ -37,8 +37,11 @@ public class SimpleJsonEditor {
         boolean editing = true;
         
         while (editing) {
-            uiManager.printInputPrompt("JSON>");
-            String input = scanner.nextLine();
+            String input = prompter.readLine("JSON>");
+            if (input == null) {
+                // Input ran out, nothing more can be typed
+                input = ":q";
+            }
             
             if (input.matches("^\\d+$")) {
                 int lineNumber = Integer.parseInt(input);
@@ -142,8 +145,7 @@ public class SimpleJsonEditor {
         }
         
         uiManager.printInfo("Current line " + lineNumber + ": " + lines.get(lineNumber - 1));
-        uiManager.printInputPrompt("New content:");
-        String newContent = scanner.nextLine();
+        String newContent = Objects.toString(prompter.readLine("New content:"), "");
         lines.set(lineNumber - 1, newContent);
         uiManager.printInfo("Line " + lineNumber + " updated.");
     }
@@ -165,8 +167,7 @@ public class SimpleJsonEditor {
             return;
         }
         
-        uiManager.printInputPrompt("Enter new line content:");
-        String newContent = scanner.nextLine();
+        String newContent = Objects.toString(prompter.readLine("Enter new line content:"), "");
         lines.add(lineNumber - 1, newContent);
         uiManager.printInfo("Line inserted at position " + lineNumber);
     }
@@ -174,7 +175,7 @@ public class SimpleJsonEditor {
     private void enterPasteMode() {
         uiManager.printInfo("Paste Mode: Enter or paste your content. Type a single '.' on a new line to finish.");
         String line;
-        while (!(line = scanner.nextLine()).equals(".")) {
+        while ((line = prompter.readLine(null)) != null && !line.equals(".")) {
             lines.add(line);
         }
         uiManager.printInfo("Paste mode ended. " + lines.size() + " lines in editor.");
@@ -0,0 +1,248 @@
+package com.curlbaby;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tab completion for the input loop. Command verbs and subcommands are fixed; group and request
+// names are read from the collections once, on the first Tab that needs them, and then kept up
+// to date through the collection manager's change notifications; URLs come from the history,
+// scanning only the entries added since the last Tab. No keystroke runs a query.
+public class TabCompleter implements ApiCollectionManager.ChangeListener {
+    private static final int MAX_CANDIDATES = 200;
+    private static final List<String> HTTP_VERBS = Arrays.asList("get", "post", "put", "delete");
+
+    private static final Map<String, List<String>> SUBCOMMANDS = new HashMap<>();
+    static {
+        SUBCOMMANDS.put("group", Arrays.asList("create", "list", "show", "rename", "delete"));
+        SUBCOMMANDS.put("api", Arrays.asList("save", "list", "show", "delete"));
+        SUBCOMMANDS.put("run", Arrays.asList("group"));
+        SUBCOMMANDS.put("pool", Arrays.asList("stats", "set", "clear", "reset"));
+        SUBCOMMANDS.put("transport", Arrays.asList("h1", "h2"));
+        SUBCOMMANDS.put("cache", Arrays.asList("stats", "on", "off", "disk", "size", "clear", "reset"));
+        SUBCOMMANDS.put("retry", Arrays.asList("show", "set", "off", "group", "request", "help"));
+        SUBCOMMANDS.put("limit", Arrays.asList("show", "set", "remove", "clear", "help"));
+        SUBCOMMANDS.put("history", Arrays.asList("clear"));
+    }
+
+    private final CommandHistory history;
+    private final ApiCollectionManager collections;
+    private final PrefixTrie commands = new PrefixTrie();
+    private final Map<String, PrefixTrie> subcommands = new HashMap<>();
+    private final PrefixTrie groups = new PrefixTrie();
+    private final Map<String, PrefixTrie> requests = new HashMap<>();
+    private final PrefixTrie urls = new PrefixTrie();
+    private boolean collectionsLoaded;
+    private int historyScanned;
+    private long historyGeneration;
+
+    public static class Completion {
+        private final String insert;
+        private final List<String> candidates;
+
+        Completion(String insert, List<String> candidates) {
+            this.insert = insert;
+            this.candidates = candidates;
+        }
+
+        // Text to insert at the cursor; empty if the word cannot be extended
+        public String getInsert() {
+            return insert;
+        }
+
+        // The possible words when there is more than one and nothing more to insert
+        public List<String> getCandidates() {
+            return candidates;
+        }
+    }
+
+    public TabCompleter(CommandHistory history, ApiCollectionManager collections) {
+        this.history = history;
+        this.collections = collections;
+        for (String command : CommandProcessor.COMMANDS) {
+            commands.add(command);
+        }
+        for (Map.Entry<String, List<String>> entry : SUBCOMMANDS.entrySet()) {
+            PrefixTrie trie = new PrefixTrie();
+            entry.getValue().forEach(trie::add);
+            subcommands.put(entry.getKey(), trie);
+        }
+        collections.addChangeListener(this);
+    }
+
+    // Completes the word that ends the given text, which is the line up to the cursor
+    public synchronized Completion complete(String line) {
+        String[] words = line.trim().isEmpty() ? new String[0] : line.trim().split("\\s+");
+        boolean newWord = line.isEmpty() || Character.isWhitespace(line.charAt(line.length() - 1));
+        int position = newWord ? words.length : words.length - 1;
+        String word = newWord ? "" : words[words.length - 1];
+
+        List<String> candidates;
+        if (position == 0) {
+            candidates = commands.complete(word.toLowerCase(), MAX_CANDIDATES);
+        } else {
+            candidates = argumentCandidates(words[0].toLowerCase(), words, position, word);
+        }
+
+        if (candidates.isEmpty()) {
+            return new Completion("", candidates);
+        }
+        if (candidates.size() == 1) {
+            String only = candidates.get(0);
+            // A URL segment ending in '/' is usually followed by more of the path
+            String suffix = only.endsWith("/") ? "" : " ";
+            return new Completion(only.substring(word.length()) + suffix, candidates);
+        }
+        String common = commonPrefix(candidates);
+        if (common.length() > word.length()) {
+            return new Completion(common.substring(word.length()), candidates);
+        }
+        return new Completion("", candidates);
+    }
+
+    private List<String> argumentCandidates(String command, String[] words, int position, String word) {
+        String sub = position > 1 ? words[1].toLowerCase() : "";
+        if (HTTP_VERBS.contains(command) && position == 1 && !word.startsWith("-")) {
+            return urlCandidates(word);
+        }
+        if (position == 1 && subcommands.containsKey(command)) {
+            return subcommands.get(command).complete(word.toLowerCase(), MAX_CANDIDATES);
+        }
+        // Only commands that accept a group name; group rename and group delete take an id
+        if (position == 2 && (command.equals("group") && sub.equals("show")
+                || command.equals("api") && Arrays.asList("save", "list").contains(sub)
+                || command.equals("run") && sub.equals("group")
+                || command.equals("retry") && sub.equals("group"))) {
+            loadCollections();
+            return groups.complete(word, MAX_CANDIDATES);
+        }
+        if (position == 3 && command.equals("api") && sub.equals("save")) {
+            // Names already taken in the group
+            loadCollections();
+            PrefixTrie names = requests.get(words[2]);
+            return names != null ? names.complete(word, MAX_CANDIDATES) : new ArrayList<>();
+        }
+        if (position > 1 && word.length() > 0 && !word.startsWith("-")
+                && (words[position - 1].equals("--url") || word.contains("://"))) {
+            return urlCandidates(word);
+        }
+        return new ArrayList<>();
+    }
+
+    private List<String> urlCandidates(String word) {
+        scanHistory();
+        return urls.complete(word, '/', MAX_CANDIDATES);
+    }
+
+    private void loadCollections() {
+        if (collectionsLoaded) {
+            return;
+        }
+        collectionsLoaded = true;
+        for (Map<String, Object> group : collections.getAllGroups()) {
+            groups.add((String) group.get("name"));
+        }
+        for (Map.Entry<String, List<String>> entry : collections.getRequestNamesByGroup().entrySet()) {
+            PrefixTrie names = requests.computeIfAbsent(entry.getKey(), key -> new PrefixTrie());
+            entry.getValue().forEach(names::add);
+        }
+    }
+
+    // Adds the URLs of history entries not seen yet: the first argument of a request command and
+    // the value of --url
+    private void scanHistory() {
+        if (history.getGeneration() != historyGeneration || history.size() < historyScanned) {
+            urls.clear();
+            historyScanned = 0;
+            historyGeneration = history.getGeneration();
+        }
+        int size = history.size();
+        for (; historyScanned < size; historyScanned++) {
+            String[] words = history.get(historyScanned).trim().split("\\s+");
+            if (words.length > 1 && HTTP_VERBS.contains(words[0].toLowerCase()) && !words[1].startsWith("-")) {
+                urls.add(words[1]);
+            }
+            for (int i = 1; i + 1 < words.length; i++) {
+                if (words[i].equals("--url")) {
+                    urls.add(words[i + 1]);
+                }
+            }
+        }
+    }
+
+    private static String commonPrefix(List<String> words) {
+        String prefix = words.get(0);
+        for (String word : words) {
+            int i = 0;
+            while (i < prefix.length() && i < word.length() && prefix.charAt(i) == word.charAt(i)) {
+                i++;
+            }
+            prefix = prefix.substring(0, i);
+        }
+        return prefix;
+    }
+
+    // Lists the candidates below the line, in columns
+    public void printCandidates(List<String> candidates) {
+        int width = 0;
+        for (String candidate : candidates) {
+            width = Math.max(width, candidate.length());
+        }
+        width += 2;
+        int columns = Math.max(1, 80 / width);
+        StringBuilder out = new StringBuilder("\n");
+        for (int i = 0; i < candidates.size(); i++) {
+            out.append(String.format("%-" + width + "s", candidates.get(i)));
+            if ((i + 1) % columns == 0 || i == candidates.size() - 1) {
+                out.append('\n');
+            }
+        }
+        System.out.print(out);
+    }
+
+    @Override
+    public synchronized void groupAdded(String name) {
+        if (collectionsLoaded) {
+            groups.add(name);
+        }
+    }
+
+    @Override
+    public synchronized void groupRenamed(String oldName, String newName) {
+        if (collectionsLoaded) {
+            groups.remove(oldName);
+            groups.add(newName);
+            PrefixTrie names = requests.remove(oldName);
+            if (names != null) {
+                requests.put(newName, names);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void groupRemoved(String name) {
+        if (collectionsLoaded) {
+            groups.remove(name);
+            requests.remove(name);
+        }
+    }
+
+    @Override
+    public synchronized void requestAdded(String group, String name) {
+        if (collectionsLoaded) {
+            requests.computeIfAbsent(group, key -> new PrefixTrie()).add(name);
+        }
+    }
+
+    @Override
+    public synchronized void requestRemoved(String group, String name) {
+        if (collectionsLoaded) {
+            PrefixTrie names = requests.get(group);
+            if (names != null) {
+                names.remove(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.curlbaby;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// The interactive terminal for the whole session. Raw mode is entered once, when the session
+// opens, and the terminal is put back the way it was by a shutdown hook however the process
+// ends. One reader thread owns standard input for the life of the process; keys are decoded
+// from its bytes, so escape sequences arrive as single KEY_ codes and UTF-8 as characters.
+//
+// Questions asked through the Prompter want the terminal's own line editing, so they suspend
+// raw mode and the next command prompt resumes it. A run of questions, such as lines typed into
+// the JSON editor, switches once each way.
+//
+// "Raw" here keeps output processing and signals: newlines still return the carriage, and
+// Ctrl-C still ends the process (restoring the terminal on the way out).
+public class TerminalSession {
+    public static final int EOF = -1;
+    // Above every Unicode code point, so they cannot be mistaken for typed characters
+    public static final int KEY_UP = 0x110000;
+    public static final int KEY_DOWN = 0x110001;
+    public static final int KEY_RIGHT = 0x110002;
+    public static final int KEY_LEFT = 0x110003;
+    public static final int KEY_HOME = 0x110004;
+    public static final int KEY_END = 0x110005;
+    public static final int KEY_DELETE = 0x110006;
+    // An escape sequence this decoder does not know
+    public static final int KEY_UNKNOWN = 0x1100ff;
+
+    private static final int ESC = 27;
+    // How long the rest of an escape sequence may take to arrive before a lone Escape is assumed
+    private static final long SEQUENCE_TIMEOUT_MS = 50;
+    private static final String RAW_MODE = "-icanon -echo -iexten min 1 time 0";
+
+    private final String savedMode;
+    private final BlockingQueue<Integer> bytes = new LinkedBlockingQueue<>();
+    private boolean raw;
+    private boolean ended;
+    private int pushedBack = EOF;
+
+    private TerminalSession(String savedMode) {
+        this.savedMode = savedMode;
+        this.raw = true;
+    }
+
+    // The session, in raw mode, or null when standard input is not a terminal or its mode
+    // cannot be changed
+    public static TerminalSession open() {
+        if (System.console() == null) {
+            return null;
+        }
+        String saved;
+        try {
+            // Save the current mode and leave it in one go
+            saved = shell("stty -g </dev/tty && stty " + RAW_MODE + " </dev/tty").trim();
+        } catch (IOException e) {
+            return null;
+        }
+        if (saved.isEmpty()) {
+            return null;
+        }
+
+        TerminalSession session = new TerminalSession(saved);
+        Runtime.getRuntime().addShutdownHook(new Thread(session::restore, "curlbaby-terminal-restore"));
+        Thread reader = new Thread(() -> session.pump(System.in), "curlbaby-terminal-input");
+        reader.setDaemon(true);
+        reader.start();
+        return session;
+    }
+
+    // Back to raw mode for key-by-key input; does nothing if already there
+    public synchronized void resume() {
+        if (!raw) {
+            try {
+                stty(RAW_MODE);
+                raw = true;
+            } catch (IOException e) {
+                System.err.println("Error switching terminal mode: " + e.getMessage());
+            }
+        }
+    }
+
+    // Back to the terminal's own line editing for questions; does nothing if already there
+    public synchronized void suspend() {
+        if (raw) {
+            try {
+                stty(savedMode);
+                raw = false;
+            } catch (IOException e) {
+                System.err.println("Error switching terminal mode: " + e.getMessage());
+            }
+        }
+    }
+
+    // The next key, waiting for it: a character, a KEY_ code, or EOF
+    public int readKey() {
+        if (pushedBack != EOF) {
+            int key = pushedBack;
+            pushedBack = EOF;
+            return key;
+        }
+        int b = take();
+        if (b == ESC) {
+            return decodeEscape();
+        }
+        if (b >= 0x80) {
+            return decodeUtf8(b);
+        }
+        return b;
+    }
+
+    // A whole line as the terminal's line editing delivered it, without the newline, or null at
+    // the end of input. Meant for suspended mode.
+    public String readLine() {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = take();
+            if (b == EOF) {
+                return line.size() > 0 ? line.toString(StandardCharsets.UTF_8) : null;
+            }
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private int decodeEscape() {
+        int next = poll();
+        if (next == '[') {
+            // CSI: parameters and intermediates, then a final byte
+            StringBuilder parameters = new StringBuilder();
+            int b = poll();
+            while (b >= 0x20 && b <= 0x3f) {
+                parameters.append((char) b);
+                b = poll();
+            }
+            switch (b) {
+                case 'A': return KEY_UP;
+                case 'B': return KEY_DOWN;
+                case 'C': return KEY_RIGHT;
+                case 'D': return KEY_LEFT;
+                case 'H': return KEY_HOME;
+                case 'F': return KEY_END;
+                case '~': return tildeKey(parameters.toString());
+                default: return KEY_UNKNOWN;
+            }
+        }
+        if (next == 'O') {
+            // SS3, sent by some terminals for the arrows and Home/End
+            switch (poll()) {
+                case 'A': return KEY_UP;
+                case 'B': return KEY_DOWN;
+                case 'C': return KEY_RIGHT;
+                case 'D': return KEY_LEFT;
+                case 'H': return KEY_HOME;
+                case 'F': return KEY_END;
+                default: return KEY_UNKNOWN;
+            }
+        }
+        if (next != EOF) {
+            // Alt with a key: the Escape, then the key
+            pushedBack = next >= 0x80 ? decodeUtf8(next) : next;
+        }
+        return ESC;
+    }
+
+    private static int tildeKey(String parameters) {
+        int semicolon = parameters.indexOf(';');
+        String code = semicolon >= 0 ? parameters.substring(0, semicolon) : parameters;
+        switch (code) {
+            case "1":
+            case "7":
+                return KEY_HOME;
+            case "4":
+            case "8":
+                return KEY_END;
+            case "3":
+                return KEY_DELETE;
+            default:
+                return KEY_UNKNOWN;
+        }
+    }
+
+    private int decodeUtf8(int lead) {
+        int count;
+        int codePoint;
+        if (lead >= 0xf0 && lead <= 0xf7) {
+            count = 3;
+            codePoint = lead & 0x07;
+        } else if (lead >= 0xe0 && lead <= 0xef) {
+            count = 2;
+            codePoint = lead & 0x0f;
+        } else if (lead >= 0xc0 && lead <= 0xdf) {
+            count = 1;
+            codePoint = lead & 0x1f;
+        } else {
+            return 0xfffd;
+        }
+        for (int i = 0; i < count; i++) {
+            int b = poll();
+            if (b < 0x80 || b > 0xbf) {
+                return 0xfffd;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3f);
+        }
+        return codePoint;
+    }
+
+    private int take() {
+        if (ended) {
+            return EOF;
+        }
+        try {
+            int b = bytes.take();
+            ended = b == EOF;
+            return b;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EOF;
+        }
+    }
+
+    // The next byte of a sequence already under way, or EOF if it does not come
+    private int poll() {
+        if (ended) {
+            return EOF;
+        }
+        try {
+            Integer b = bytes.poll(SEQUENCE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (b == null) {
+                return EOF;
+            }
+            ended = b == EOF;
+            return b;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EOF;
+        }
+    }
+
+    private void pump(InputStream in) {
+        byte[] buffer = new byte[256];
+        try {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    bytes.add(buffer[i] & 0xff);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading input: " + e.getMessage());
+        }
+        bytes.add(EOF);
+    }
+
+    private synchronized void restore() {
+        try {
+            stty(savedMode);
+        } catch (IOException e) {
+            System.err.println("Failed to reset terminal: " + e.getMessage());
+        }
+    }
+
+    private static void stty(String arguments) throws IOException {
+        shell("stty " + arguments + " </dev/tty");
+    }
+
+    private static String shell(String command) throws IOException {
+        Process process = new ProcessBuilder("/bin/sh", "-c", command)
+                .redirectErrorStream(true)
+                .start();
+        try {
+            byte[] output = process.getInputStream().readAllBytes();
+            if (process.waitFor() != 0) {
+                throw new IOException("stty failed: " + new String(output, StandardCharsets.UTF_8).trim());
+            }
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while changing terminal mode");
+        }
+    }
+}
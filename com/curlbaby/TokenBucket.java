@@ -0,0 +1,70 @@
+package com.curlbaby;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Token bucket in its GCRA form: instead of a token count refilled by a timer, one AtomicLong
+// holds the time at which the bucket would be empty again. Taking a token is a single CAS
+// that pushes it one interval further, so worker threads never block each other.
+public class TokenBucket {
+    private final double ratePerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder delayNanos = new LongAdder();
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    // Claims the next token and returns how long the caller has to wait before using it
+    public long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return Math.max(0, arrival - toleranceNanos - now);
+            }
+        }
+    }
+
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait <= 0) {
+            return;
+        }
+        delayed.increment();
+        delayNanos.add(wait);
+        long deadline = System.nanoTime() + wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public long getDelayed() {
+        return delayed.sum();
+    }
+
+    public long getDelayNanos() {
+        return delayNanos.sum();
+    }
+}
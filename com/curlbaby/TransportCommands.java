@@ -0,0 +1,456 @@
+package com.curlbaby;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class TransportCommands {
+    private final UIManager uiManager;
+    private final HttpRequestHandler requestHandler;
+    private final ApiCollectionManager collectionManager;
+
+    public TransportCommands(UIManager uiManager, HttpRequestHandler requestHandler,
+                             ApiCollectionManager collectionManager) {
+        this.uiManager = uiManager;
+        this.requestHandler = requestHandler;
+        this.collectionManager = collectionManager;
+    }
+
+    public void handleCommand(String command, String argument) {
+        switch (command) {
+            case "pool":
+                handlePoolCommand(argument);
+                break;
+            case "transport":
+                handleTransportCommand(argument);
+                break;
+            case "cache":
+                handleCacheCommand(argument);
+                break;
+            case "retry":
+                handleRetryCommand(argument);
+                break;
+            case "limit":
+                handleLimitCommand(argument);
+                break;
+            default:
+                uiManager.printError("Unknown transport command: " + command);
+                uiManager.printInfo("Type 'help' for available commands");
+        }
+    }
+
+    private void handleTransportCommand(String argument) {
+        String mode = argument.trim().toLowerCase();
+        if (mode.isEmpty()) {
+            uiManager.printInfo("Current transport: " + describe(requestHandler.getTransport().getName()));
+            return;
+        }
+        if (requestHandler.selectTransport(mode)) {
+            uiManager.printSuccess("Transport set to " + describe(mode));
+        } else {
+            uiManager.printError("Usage: transport <h1|h2>");
+        }
+    }
+
+    private String describe(String mode) {
+        return mode.equals("h2")
+                ? "h2 (HTTP/2 with multiplexing, falls back to HTTP/1.1)"
+                : "h1 (HTTP/1.1 with pooled keep-alive connections)";
+    }
+
+    private void handlePoolCommand(String argument) {
+        String[] parts = argument.trim().split("\\s+");
+        String subCommand = parts[0].toLowerCase();
+        ConnectionPool pool = requestHandler.getConnectionPool();
+
+        switch (subCommand) {
+            case "":
+            case "stats":
+                printPoolStats(pool);
+                break;
+            case "set":
+                if (parts.length != 3) {
+                    uiManager.printError("Usage: pool set <max-idle|max-per-host|idle-timeout> <value>");
+                    return;
+                }
+                setPoolLimit(pool, parts[1].toLowerCase(), parts[2]);
+                break;
+            case "clear":
+                pool.clear();
+                uiManager.printSuccess("Closed all idle connections");
+                break;
+            case "reset":
+                pool.resetStats();
+                uiManager.printSuccess("Connection pool statistics reset");
+                break;
+            default:
+                uiManager.printError("Unknown pool command: " + subCommand);
+                printPoolHelp();
+        }
+    }
+
+    private void setPoolLimit(ConnectionPool pool, String name, String value) {
+        int limit;
+        try {
+            limit = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            uiManager.printError("Invalid number: " + value);
+            return;
+        }
+        if (limit < 0 || (limit == 0 && !name.equals("max-idle"))) {
+            uiManager.printError("Value out of range: " + value);
+            return;
+        }
+
+        switch (name) {
+            case "max-idle":
+                pool.setMaxIdlePerHost(limit);
+                break;
+            case "max-per-host":
+                pool.setMaxPerHost(limit);
+                break;
+            case "idle-timeout":
+                pool.setIdleTimeoutMillis(limit * 1000L);
+                break;
+            default:
+                uiManager.printError("Unknown pool setting: " + name);
+                printPoolHelp();
+                return;
+        }
+        uiManager.printSuccess("Pool " + name + " set to " + limit);
+    }
+
+    private void printPoolStats(ConnectionPool pool) {
+        long hits = pool.getHits();
+        long misses = pool.getMisses();
+        long total = hits + misses;
+
+        uiManager.printInfo("Connection Pool:");
+        System.out.printf("  Hits: %d  Misses: %d  Evictions: %d  Reuse rate: %s\n",
+                hits, misses, pool.getEvictions(),
+                total == 0 ? "-" : String.format("%.1f%%", hits * 100.0 / total));
+        System.out.printf("  Limits: max-idle %d, max-per-host %d, idle-timeout %ds\n",
+                pool.getMaxIdlePerHost(), pool.getMaxPerHost(), pool.getIdleTimeoutMillis() / 1000);
+
+        if (!requestHandler.getTransport().getName().equals("h1")) {
+            uiManager.printInfo("The pool is only used by the h1 transport (current: "
+                    + requestHandler.getTransport().getName() + ")");
+        }
+
+        Map<String, int[]> hosts = pool.getHostStats();
+        if (hosts.isEmpty()) {
+            uiManager.printInfo("No open connections");
+            return;
+        }
+        for (Map.Entry<String, int[]> host : hosts.entrySet()) {
+            System.out.printf("  %s - %d idle, %d in use\n", host.getKey(), host.getValue()[0], host.getValue()[1]);
+        }
+    }
+
+    private void printPoolHelp() {
+        uiManager.printInfo("Pool Commands:");
+        uiManager.printInfo("  pool stats - Show connection reuse statistics");
+        uiManager.printInfo("  pool set max-idle <n> - Idle connections kept per host");
+        uiManager.printInfo("  pool set max-per-host <n> - Maximum open connections per host");
+        uiManager.printInfo("  pool set idle-timeout <seconds> - Close connections idle for longer");
+        uiManager.printInfo("  pool clear - Close all idle connections");
+        uiManager.printInfo("  pool reset - Reset statistics");
+    }
+
+    private void handleCacheCommand(String argument) {
+        String[] parts = argument.trim().split("\\s+");
+        String subCommand = parts[0].toLowerCase();
+        HttpResponseCache cache = requestHandler.getResponseCache();
+
+        switch (subCommand) {
+            case "":
+            case "stats":
+                printCacheStats(cache);
+                break;
+            case "on":
+            case "off":
+                cache.setEnabled(subCommand.equals("on"));
+                uiManager.printSuccess("Response cache " + (cache.isEnabled() ? "enabled" : "disabled"));
+                break;
+            case "disk":
+                if (parts.length != 2 || !(parts[1].equalsIgnoreCase("on") || parts[1].equalsIgnoreCase("off"))) {
+                    uiManager.printError("Usage: cache disk <on|off>");
+                    return;
+                }
+                cache.setDiskEnabled(parts[1].equalsIgnoreCase("on"));
+                uiManager.printSuccess("Disk cache " + (cache.isDiskEnabled()
+                        ? "enabled: " + cache.getDiskDir().getAbsolutePath() : "disabled"));
+                break;
+            case "size":
+                if (parts.length != 2) {
+                    uiManager.printError("Usage: cache size <MB>");
+                    return;
+                }
+                try {
+                    int megabytes = Integer.parseInt(parts[1]);
+                    if (megabytes < 1) {
+                        uiManager.printError("Value out of range: " + parts[1]);
+                        return;
+                    }
+                    cache.setMaxBytes(megabytes * 1024L * 1024);
+                    uiManager.printSuccess("Cache size set to " + megabytes + " MB");
+                } catch (NumberFormatException e) {
+                    uiManager.printError("Invalid number: " + parts[1]);
+                }
+                break;
+            case "clear":
+                cache.clear();
+                uiManager.printSuccess("Response cache cleared");
+                break;
+            case "reset":
+                cache.resetStats();
+                uiManager.printSuccess("Cache statistics reset");
+                break;
+            default:
+                uiManager.printError("Unknown cache command: " + subCommand);
+                printCacheHelp();
+        }
+    }
+
+    private void printCacheStats(HttpResponseCache cache) {
+        long hits = cache.getHits();
+        long revalidations = cache.getRevalidations();
+        long total = hits + revalidations + cache.getMisses();
+
+        uiManager.printInfo("Response Cache: " + (cache.isEnabled() ? "on" : "off")
+                + (cache.isDiskEnabled() ? " (with disk tier)" : ""));
+        System.out.printf("  Hits: %d  Revalidated: %d  Misses: %d  Hit rate: %s\n",
+                hits, revalidations, cache.getMisses(),
+                total == 0 ? "-" : String.format("%.1f%%", (hits + revalidations) * 100.0 / total));
+        System.out.printf("  Stored: %d  Evictions: %d  Disk reads: %d  Body bytes saved: %s\n",
+                cache.getStores(), cache.getEvictions(), cache.getDiskReads(),
+                uiManager.formatBytes(cache.getBytesSaved()));
+        System.out.printf("  Memory: %d entries, %s of %s\n", cache.getEntryCount(),
+                uiManager.formatBytes(cache.getUsedBytes()), uiManager.formatBytes(cache.getMaxBytes()));
+        if (cache.isDiskEnabled()) {
+            System.out.printf("  Disk: %s in %s\n", uiManager.formatBytes(cache.getDiskBytes()),
+                    cache.getDiskDir().getAbsolutePath());
+        }
+    }
+
+    private void printCacheHelp() {
+        uiManager.printInfo("Cache Commands:");
+        uiManager.printInfo("  cache on|off - Enable or disable the response cache");
+        uiManager.printInfo("  cache stats - Show cache statistics");
+        uiManager.printInfo("  cache disk on|off - Keep cached responses on disk as well");
+        uiManager.printInfo("  cache size <MB> - Memory budget for cached responses");
+        uiManager.printInfo("  cache clear - Remove all cached responses");
+        uiManager.printInfo("  cache reset - Reset statistics");
+    }
+
+    private void handleRetryCommand(String argument) {
+        String[] parts = argument.trim().split("\\s+", 2);
+        String subCommand = parts[0].toLowerCase();
+        String rest = parts.length > 1 ? parts[1].trim() : "";
+
+        switch (subCommand) {
+            case "":
+            case "show":
+                printRetryPolicies();
+                break;
+            case "set":
+                if (rest.isEmpty()) {
+                    uiManager.printError("Usage: retry set <policy>");
+                    printRetryHelp();
+                    return;
+                }
+                try {
+                    RetryPolicy policy = RetryPolicy.parse(rest);
+                    requestHandler.setDefaultRetryPolicy(policy);
+                    uiManager.printSuccess("Default retry policy: " + policy.toSpec());
+                } catch (IllegalArgumentException e) {
+                    uiManager.printError(e.getMessage());
+                }
+                break;
+            case "off":
+                requestHandler.setDefaultRetryPolicy(null);
+                uiManager.printSuccess("Retries disabled for requests without their own policy");
+                break;
+            case "group":
+            case "request":
+                setScopedRetryPolicy(subCommand, rest);
+                break;
+            case "help":
+                printRetryHelp();
+                break;
+            default:
+                uiManager.printError("Unknown retry command: " + subCommand);
+                printRetryHelp();
+        }
+    }
+
+    // retry group <id|name> <policy|off>, retry request <id> <policy|off>
+    private void setScopedRetryPolicy(String scope, String argument) {
+        String[] parts = argument.split("\\s+", 2);
+        if (parts.length < 2) {
+            uiManager.printError("Usage: retry " + scope + (scope.equals("group") ? " <id|name>" : " <id>") + " <policy|off>");
+            return;
+        }
+
+        Integer scopeId = null;
+        try {
+            scopeId = Integer.parseInt(parts[0]);
+        } catch (NumberFormatException e) {
+            if (scope.equals("group")) {
+                scopeId = collectionManager.getGroupIdByName(parts[0]);
+            }
+        }
+        boolean exists = scopeId != null && (scope.equals("group")
+                ? collectionManager.getGroupById(scopeId) != null
+                : collectionManager.getRequestById(scopeId) != null);
+        if (!exists) {
+            uiManager.printError((scope.equals("group") ? "Group" : "API request") + " not found: " + parts[0]);
+            return;
+        }
+
+        if (parts[1].trim().equalsIgnoreCase("off")) {
+            if (collectionManager.setRetryPolicy(scope, scopeId, null)) {
+                uiManager.printSuccess("Removed the retry policy of " + scope + " " + scopeId);
+            } else {
+                uiManager.printInfo(scope + " " + scopeId + " has no retry policy of its own");
+            }
+            return;
+        }
+        try {
+            RetryPolicy policy = RetryPolicy.parse(parts[1]);
+            if (collectionManager.setRetryPolicy(scope, scopeId, policy.toSpec())) {
+                uiManager.printSuccess("Retry policy for " + scope + " " + scopeId + ": " + policy.toSpec());
+            }
+        } catch (IllegalArgumentException e) {
+            uiManager.printError(e.getMessage());
+        }
+    }
+
+    private void printRetryPolicies() {
+        RetryPolicy defaultPolicy = requestHandler.getDefaultRetryPolicy();
+        uiManager.printInfo("Default: " + (defaultPolicy != null ? defaultPolicy.toSpec() : "off (single attempt)"));
+
+        List<Map<String, Object>> policies = collectionManager.getRetryPolicies();
+        if (policies.isEmpty()) {
+            uiManager.printInfo("No group or request policies");
+            return;
+        }
+        for (Map<String, Object> policy : policies) {
+            System.out.printf("  %-7s %-4s %-24s %s\n", policy.get("scope"), policy.get("scope_id"),
+                    policy.get("name") != null ? policy.get("name") : "(deleted)", policy.get("spec"));
+        }
+        uiManager.printInfo("A request's own policy wins over its group's, which wins over the default");
+    }
+
+    private void printRetryHelp() {
+        uiManager.printInfo("Retry Commands:");
+        uiManager.printInfo("  retry - Show the default policy and stored group/request policies");
+        uiManager.printInfo("  retry set <policy> - Default policy for this session");
+        uiManager.printInfo("  retry off - Send requests once unless they have their own policy");
+        uiManager.printInfo("  retry group <id|name> <policy|off> - Store a policy for a group");
+        uiManager.printInfo("  retry request <id> <policy|off> - Store a policy for a saved request");
+        uiManager.printInfo("Policy keys (all optional):");
+        uiManager.printInfo("  attempts=3               total tries including the first");
+        uiManager.printInfo("  status=429,502,503,504   status codes to retry, 5xx for a whole class");
+        uiManager.printInfo("  errors=on                retry connection and read errors");
+        uiManager.printInfo("  methods=idempotent       or all to also retry POST");
+        uiManager.printInfo("  backoff=100ms..5s        exponential backoff range, with full jitter");
+        uiManager.printInfo("  budget=20%               retries allowed on top of normal traffic");
+        uiManager.printInfo("  hedge=off                p95 or 200ms: duplicate slow GETs after that delay");
+    }
+
+    private void handleLimitCommand(String argument) {
+        String[] parts = argument.trim().split("\\s+", 2);
+        String subCommand = parts[0].toLowerCase();
+        String rest = parts.length > 1 ? parts[1].trim() : "";
+        HostLimits limits = requestHandler.getHostLimits();
+
+        switch (subCommand) {
+            case "":
+            case "show":
+                printHostLimits(limits);
+                break;
+            case "set":
+                setHostLimit(limits, rest);
+                break;
+            case "remove":
+                if (rest.isEmpty()) {
+                    uiManager.printError("Usage: limit remove <host-pattern>");
+                } else if (limits.remove(rest.toLowerCase())) {
+                    uiManager.printSuccess("Removed limit for " + rest);
+                } else {
+                    uiManager.printError("No limit for " + rest);
+                }
+                break;
+            case "clear":
+                limits.clear();
+                uiManager.printSuccess("Removed all host limits");
+                break;
+            case "help":
+                printLimitHelp();
+                break;
+            default:
+                uiManager.printError("Unknown limit command: " + subCommand);
+                printLimitHelp();
+        }
+    }
+
+    // limit set <host-pattern> [--rate <n/s>] [--burst <n>] [--concurrency <n>]
+    private void setHostLimit(HostLimits limits, String argument) {
+        CommandOptions options = CommandOptions.parse(argument);
+        String pattern = options.getPositional(0);
+        if (pattern == null || !(options.has("rate") || options.has("concurrency"))) {
+            uiManager.printError("Usage: limit set <host-pattern> [--rate <n/s>] [--burst <n>] [--concurrency <n>]");
+            return;
+        }
+        double rate;
+        int burst;
+        int concurrency;
+        try {
+            rate = options.getRatePerSecond("rate", 0);
+            burst = options.getInt("burst", 1);
+            concurrency = options.getInt("concurrency", 0);
+        } catch (IllegalArgumentException e) {
+            uiManager.printError(e.getMessage());
+            return;
+        }
+        if (rate < 0 || burst < 1 || concurrency < 0) {
+            uiManager.printError("Rate, burst and concurrency must be positive");
+            return;
+        }
+        limits.set(pattern, rate, burst, concurrency);
+        HostLimits.Rule rule = limits.getRules().stream()
+                .filter(r -> r.getPattern().equals(pattern.toLowerCase())).findFirst().orElse(null);
+        uiManager.printSuccess("Limit for " + pattern + ": " + (rule != null ? rule.describe() : ""));
+    }
+
+    private void printHostLimits(HostLimits limits) {
+        if (limits.getRules().isEmpty()) {
+            uiManager.printInfo("No host limits; requests are sent as fast as they are issued");
+            return;
+        }
+        uiManager.printInfo("Host Limits:");
+        for (HostLimits.Rule rule : limits.getRules()) {
+            System.out.printf("  %-32s %s\n", rule.getPattern(), rule.describe());
+        }
+        for (Map.Entry<String, Optional<HostLimits.Limiter>> entry : limits.getLimiters().entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            HostLimits.Limiter limiter = entry.getValue().get();
+            System.out.printf("  %s (%s) - %d in flight, %d waited for a slot, %d delayed by the rate for %s in total\n",
+                    entry.getKey(), limiter.getRule().getPattern(), limiter.getInFlight(), limiter.getQueued(),
+                    limiter.getDelayed(), uiManager.formatDuration(limiter.getDelayNanos()));
+        }
+    }
+
+    private void printLimitHelp() {
+        uiManager.printInfo("Limit Commands:");
+        uiManager.printInfo("  limit - Show host limits and how often they held requests back");
+        uiManager.printInfo("  limit set <host-pattern> --rate <n/s> [--burst <n>] - Cap requests per second");
+        uiManager.printInfo("  limit set <host-pattern> --concurrency <n> - Cap requests in flight");
+        uiManager.printInfo("  limit remove <host-pattern> - Remove one limit");
+        uiManager.printInfo("  limit clear - Remove all limits");
+        uiManager.printInfo("Patterns match host or host:port and may use *, e.g. *.staging.example.com");
+    }
+}
@@ -1,5 +1,7 @@
 package com.curlbaby;
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.github.lalyos.jfiglet.FigletFont;
 
 public class UIManager {
@@ -15,14 +17,19 @@ public class UIManager {
     private static final String YELLOW = "\033[0;33m";
     private static final String PINK = "\033[1;35m"; // Using bold magenta as a more compatible pink
     
+    private final AtomicInteger failures = new AtomicInteger();
+    
     public String getReset() { return RESET; }
     public String getBoldYellow() { return BOLD_YELLOW; }
+    public String getBoldRed() { return BOLD_RED; }
 
         
     
     public void printWelcomeScreen() {
         try {
-            String banner = FigletFont.convertOneLine(new File("./curlbaby/fonts/slant.flf"), "curlbaby");
+            // curlbaby.sh passes its own directory, since commands run from the caller's directory
+            File font = new File(System.getProperty("curlbaby.home", "."), "curlbaby/fonts/slant.flf");
+            String banner = FigletFont.convertOneLine(font, "curlbaby");
             String logo = FigletFont.convertOneLine("{0_0}");
             System.out.println(logo);
             // System.out.println(PINK + "     ___" + RESET);
@@ -71,9 +78,20 @@ public class UIManager {
     }
     
     public void printError(String message) {
+        recordFailure();
         System.out.println(BOLD_RED + "✗ " + message + RESET);
     }
     
+    // Every printed error counts, as do responses with an error status; scripts turn the
+    // count into their exit code
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+    
+    public int getFailureCount() {
+        return failures.get();
+    }
+    
     public void printWarning(String message) {
         System.out.println(YELLOW + "⚠ " + message + RESET);
     }
@@ -95,14 +113,23 @@ public class UIManager {
     }
     
     public void printStatusInfo(int status, String message) {
-        String statusPrefix = BOLD_GREEN;
+        printStatusInfo(status, message, null);
+    }
+    
+    public String getStatusColor(int status) {
         if (status >= 400) {
-            statusPrefix = BOLD_RED;
+            return BOLD_RED;
         } else if (status >= 300) {
-            statusPrefix = BOLD_YELLOW;
+            return BOLD_YELLOW;
         }
+        return BOLD_GREEN;
+    }
+    
+    public void printStatusInfo(int status, String message, String protocol) {
+        String statusPrefix = getStatusColor(status);
         
-        System.out.println(statusPrefix + "📊 Status: " + status + " " + message + RESET);
+        String protocolSuffix = protocol != null ? " " + CYAN + "(" + protocol + ")" : "";
+        System.out.println(statusPrefix + "📊 Status: " + status + " " + message + protocolSuffix + RESET);
     }
     
     public void printHeadersSection() {
@@ -125,6 +152,70 @@ public class UIManager {
         System.out.println("  " + CYAN + key + ":" + RESET + " " + value);
     }
     
+    public void printTimingSection(RequestTiming timing) {
+        System.out.println("\n" + BOLD_YELLOW + "⏱  Timing:" + RESET);
+        
+        int barWidth = 40;
+        long total = timing.getTotal();
+        for (long nanos : timing.getPhases().values()) {
+            total = Math.max(total, nanos);
+        }
+        long phaseSum = timing.getPhases().values().stream().mapToLong(n -> Math.max(0, n)).sum();
+        total = Math.max(1, Math.max(total, phaseSum));
+        long offset = 0;
+        for (Map.Entry<String, Long> phase : timing.getPhases().entrySet()) {
+            long nanos = phase.getValue();
+            if (nanos < 0) {
+                System.out.printf("  %s%-9s%s %10s%n", CYAN, phase.getKey(), RESET, "n/a");
+                continue;
+            }
+            int start = (int) (offset * barWidth / total);
+            int length = Math.max(nanos > 0 ? 1 : 0, (int) (nanos * barWidth / total));
+            length = Math.min(length, barWidth - Math.min(start, barWidth));
+            System.out.printf("  %s%-9s%s %10s  %s%s%s%n", CYAN, phase.getKey(), RESET, formatDuration(nanos),
+                    " ".repeat(start), GREEN + "█".repeat(length), RESET);
+            offset += nanos;
+        }
+        System.out.printf("  %s%-9s%s %10s%s%n", CYAN, "Total", RESET, formatDuration(timing.getTotal()),
+                timing.isReusedConnection() ? "  (reused connection)" : "");
+    }
+    
+    public void printBodySize(long received, long decoded, String contentEncoding) {
+        if (contentEncoding == null) {
+            System.out.println(CYAN + "📦 Size: " + RESET + formatBytes(received));
+            return;
+        }
+        String ratio = received > 0 ? String.format(", %.1fx smaller on the wire", (double) decoded / received) : "";
+        System.out.println(CYAN + "📦 Size: " + RESET + formatBytes(received) + " received, "
+                + formatBytes(decoded) + " after " + contentEncoding + " decoding" + ratio);
+    }
+    
+    public String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+    
+    public String formatDuration(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1f µs", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.2f ms", nanos / 1e6);
+        }
+        return String.format("%.2f s", nanos / 1e9);
+    }
+    
     public void printRequestBodySection() {
         System.out.println("\n" + BOLD_PURPLE + "📝 Request Body:" + RESET);
     }
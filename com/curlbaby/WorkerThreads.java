@@ -0,0 +1,47 @@
+package com.curlbaby;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkerThreads {
+    private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+    
+    private WorkerThreads() {
+    }
+    
+    // Looked up reflectively so the sources still compile and run on JDKs without Loom
+    private static Method findVirtualExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+    
+    public static boolean isVirtual() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+    
+    public static String describe() {
+        return isVirtual() ? "virtual threads" : "platform threads";
+    }
+    
+    // One thread per submitted task; callers bound concurrency by how many tasks they submit
+    public static ExecutorService newExecutor(String namePrefix) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Fall through to platform threads
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
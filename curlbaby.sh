@@ -1,16 +1,21 @@
 #!/bin/bash
 set -e
 
+# Commands run from the caller's directory so that relative paths in arguments
+# (-o, --body-file, --script) mean what the caller expects
 SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
-cd "$SCRIPT_DIR"
+TARGET_DIR="$SCRIPT_DIR/curlbaby/target"
+LIB_DIR="$SCRIPT_DIR/curlbaby/lib"
+JAR="$TARGET_DIR/curlbaby.jar"
+CDS_ARCHIVE="$TARGET_DIR/curlbaby.jsa"
 
-mkdir -p curlbaby/target/classes
-mkdir -p curlbaby/lib
+mkdir -p "$TARGET_DIR/classes"
+mkdir -p "$LIB_DIR"
 
 # Check Java installation
 if ! command -v java &> /dev/null; then
-    echo "Error: Java is not installed or not in PATH"
-    echo "Please install Java to run cUrlBaby"
+    echo "Error: Java is not installed or not in PATH" >&2
+    echo "Please install Java to run cUrlBaby" >&2
     exit 1
 fi
 
@@ -19,31 +24,23 @@ REQUIRED_JARS=("json-simple-1.1.1.jar" "jfiglet-0.0.8.jar")
 BACKUP_PATHS=("backup/client/lib" "../backup/client/lib" "lib")
 
 # Auto-copy missing JARs
-for JAR in "${REQUIRED_JARS[@]}"; do
-    if [ ! -f "curlbaby/lib/$JAR" ]; then
+for JAR_NAME in "${REQUIRED_JARS[@]}"; do
+    if [ ! -f "$LIB_DIR/$JAR_NAME" ]; then
         for backup_path in "${BACKUP_PATHS[@]}"; do
-            if [ -f "$backup_path/$JAR" ]; then
-                echo "Copying $JAR from $backup_path"
-                cp "$backup_path/$JAR" curlbaby/lib/
+            if [ -f "$SCRIPT_DIR/$backup_path/$JAR_NAME" ]; then
+                echo "Copying $JAR_NAME from $backup_path" >&2
+                cp "$SCRIPT_DIR/$backup_path/$JAR_NAME" "$LIB_DIR/"
                 break
             fi
         done
 
-        if [ ! -f "curlbaby/lib/$JAR" ]; then
-            echo "Error: $JAR not found. Cannot proceed without it."
+        if [ ! -f "$LIB_DIR/$JAR_NAME" ]; then
+            echo "Error: $JAR_NAME not found. Cannot proceed without it." >&2
             exit 1
         fi
     fi
 done
 
-# Find Java source files
-JAVA_FILES=$(find com/curlbaby -name "*.java" 2>/dev/null)
-
-if [ -z "$JAVA_FILES" ]; then
-    echo "Error: No Java source files found in com/curlbaby directory"
-    exit 1
-fi
-
 # Determine classpath separator based on OS
 if [[ "$OSTYPE" == "msys" || "$OSTYPE" == "win32" || "$OSTYPE" == "cygwin" ]]; then
     CP_SEP=";"
@@ -51,11 +48,31 @@ else
     CP_SEP=":"
 fi
 
-# Compile
-echo "Compiling cUrlBaby application..."
-javac -cp "curlbaby/lib/*" -d curlbaby/target/classes $JAVA_FILES
+# Compile only when a source file is newer than the jar
+if [ ! -f "$JAR" ] || [ -n "$(find "$SCRIPT_DIR/com/curlbaby" -name "*.java" -newer "$JAR" 2>/dev/null | head -n 1)" ]; then
+    JAVA_FILES=$(find "$SCRIPT_DIR/com/curlbaby" -name "*.java" 2>/dev/null)
+    if [ -z "$JAVA_FILES" ]; then
+        echo "Error: No Java source files found in com/curlbaby directory" >&2
+        exit 1
+    fi
+
+    # String concatenation compiled to StringBuilder calls: the invokedynamic default spins
+    # up a method handle per call site at run time, which costs a one-shot run ~100 ms
+    echo "Compiling cUrlBaby application..." >&2
+    rm -rf "$TARGET_DIR/classes" "$CDS_ARCHIVE"
+    mkdir -p "$TARGET_DIR/classes"
+    javac -encoding UTF-8 -XDstringConcat=inline -cp "$LIB_DIR/*" -d "$TARGET_DIR/classes" $JAVA_FILES
+    jar --create --file "$JAR" --main-class com.curlbaby.CurlBabyApp -C "$TARGET_DIR/classes" .
+fi
+
+# Class data sharing: the first run after a build records the classes it loads, later runs
+# map that archive instead of loading and verifying the classes again
+if [ -f "$CDS_ARCHIVE" ]; then
+    CDS_OPTS=("-XX:SharedArchiveFile=$CDS_ARCHIVE")
+else
+    CDS_OPTS=("-XX:ArchiveClassesAtExit=$CDS_ARCHIVE")
+fi
 
-# Run
-echo "Compilation successful. Starting cUrlBaby application..."
-echo ""
-java -Djava.awt.headless=true -cp "curlbaby/target/classes${CP_SEP}curlbaby/lib/*" com.curlbaby.CurlBabyApp "$@"
+exec java "${CDS_OPTS[@]}" -Xlog:cds=off -Xlog:cds+dynamic=off \
+    -Djava.awt.headless=true -Dcurlbaby.home="$SCRIPT_DIR" \
+    -cp "$JAR${CP_SEP}$LIB_DIR/*" com.curlbaby.CurlBabyApp "$@"